@@ -4,7 +4,14 @@ LIB_SRC=src/main/java/io/github/jvoiceproject/piperjni
 
 javac -h src/main/native \
 $LIB_SRC/internal/NativeUtils.java \
+$LIB_SRC/PiperAudio.java \
+$LIB_SRC/PiperMemoryMXBean.java \
+$LIB_SRC/PiperMemoryUsage.java \
+$LIB_SRC/PiperSynthesisParams.java \
+$LIB_SRC/PiperTimingTrack.java \
 $LIB_SRC/PiperVoice.java \
+$LIB_SRC/StubSynthesisEngine.java \
+$LIB_SRC/SynthesisEngine.java \
 $LIB_SRC/PiperJNI.java
 
 rm -rf $LIB_SRC/*.class $LIB_SRC/internal/*.class
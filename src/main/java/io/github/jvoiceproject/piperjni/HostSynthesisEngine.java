@@ -0,0 +1,454 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.jvoiceproject.piperjni.internal.HostProtocol;
+
+/**
+ * {@link SynthesisEngine} backed by a {@link PiperHost} process, voices are loaded and synthesized
+ * by the host so the native library is not loaded in the current JVM.
+ *
+ * <p>Use it through a {@link PiperJNI} instance, which exposes the usual API:
+ *
+ * <pre>{@code
+ * try (var engine = new HostSynthesisEngine(socketPath, true);
+ *         var piper = new PiperJNI(engine)) {
+ *     piper.initialize();
+ *     // ...
+ * }
+ * }</pre>
+ *
+ * <p>Requests on an engine instance are serialized, use one engine per concurrent caller. If the
+ * host dies the engine reconnects on the next request, launching a new host process when enabled,
+ * and reloads its voices. The voices memory is held by the host process, so they report no native
+ * memory usage.
+ *
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public class HostSynthesisEngine implements SynthesisEngine, AutoCloseable {
+    private static final long HOST_STARTUP_TIMEOUT_MILLIS = 30_000;
+
+    private final Path socketPath;
+    private final boolean launchHost;
+    private final Map<Integer, RemoteVoice> voices = new LinkedHashMap<>();
+    private int nextVoiceRef;
+    private SocketChannel channel;
+    private DataInputStream in;
+    private DataOutputStream out;
+    private HostProtocol.SharedAudio sharedAudio;
+    private Process hostProcess;
+
+    /**
+     * Creates an engine for an already running host.
+     *
+     * @param socketPath host socket path
+     */
+    public HostSynthesisEngine(Path socketPath) {
+        this(socketPath, false);
+    }
+
+    /**
+     * Creates a new host engine.
+     *
+     * @param socketPath host socket path
+     * @param launchHost launch a host process from the current class path when none is listening
+     */
+    public HostSynthesisEngine(Path socketPath, boolean launchHost) {
+        this.socketPath = socketPath;
+        this.launchHost = launchHost;
+    }
+
+    /**
+     * Get piper version of the host.
+     *
+     * @return piper library version.
+     * @throws UncheckedIOException if the host is unreachable
+     */
+    @Override
+    public synchronized String getVersion() {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                connect();
+                out.writeInt(HostProtocol.GET_VERSION);
+                out.flush();
+                readReply();
+                return HostProtocol.readString(in);
+            } catch (IOException e) {
+                retryOrThrowUnchecked(attempt, e);
+            }
+        }
+    }
+
+    /**
+     * The host phonemizes with its own eSpeak NG data.
+     *
+     * @return null
+     */
+    @Override
+    public Path getESpeakDataPath() {
+        return null;
+    }
+
+    /**
+     * Loads a voice in the host, the eSpeak NG data path is ignored.
+     *
+     * @param espeakDataPath ignored, the host uses its own data
+     * @param modelPath model file path
+     * @param modelConfigPath model config file path
+     * @param speakerId Speaker id or -1.
+     * @return the voice reference
+     * @throws FileNotFoundException if models or config doesn't exist
+     * @throws UncheckedIOException if the host is unreachable or fails to load the voice
+     */
+    @Override
+    public synchronized int loadVoice(
+            String espeakDataPath, Path modelPath, Path modelConfigPath, long speakerId)
+            throws FileNotFoundException {
+        if (modelPath == null || !Files.exists(modelPath) || Files.isDirectory(modelPath)) {
+            throw new FileNotFoundException("Model file is required");
+        }
+        if (modelConfigPath == null
+                || !Files.exists(modelConfigPath)
+                || Files.isDirectory(modelConfigPath)) {
+            throw new FileNotFoundException("Model config file is required");
+        }
+        RemoteVoice voice =
+                new RemoteVoice(
+                        modelPath.toAbsolutePath().toString(),
+                        modelConfigPath.toAbsolutePath().toString(),
+                        speakerId);
+        for (int attempt = 0; ; attempt++) {
+            try {
+                connect();
+                register(voice);
+                int ref = nextVoiceRef++;
+                voices.put(ref, voice);
+                return ref;
+            } catch (IOException e) {
+                retryOrThrowUnchecked(attempt, e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void freeVoice(int voiceRef) {
+        RemoteVoice voice = voices.remove(voiceRef);
+        if (voice == null || channel == null) {
+            return;
+        }
+        try {
+            out.writeInt(HostProtocol.FREE_VOICE);
+            out.writeInt(voice.remoteId);
+            out.flush();
+            readReply();
+        } catch (IOException e) {
+            // host voices are released when the connection closes
+            disconnect();
+        }
+    }
+
+    @Override
+    public synchronized boolean voiceUsesESpeakPhonemes(int voiceRef) {
+        return getVoice(voiceRef).usesESpeakPhonemes;
+    }
+
+    @Override
+    public synchronized int voiceSampleRate(int voiceRef) {
+        return getVoice(voiceRef).sampleRate;
+    }
+
+    @Override
+    public synchronized PiperMemoryUsage voiceMemoryUsage(int voiceRef) {
+        getVoice(voiceRef);
+        return new PiperMemoryUsage(0, 0, 0);
+    }
+
+    /**
+     * Converts text to audio in the host.
+     *
+     * <p>A blocking request is retried once on a new connection if the host fails, a streaming
+     * request is not, as part of its audio may have been delivered.
+     *
+     * @param voiceRef the voice reference
+     * @param text text to speak, not blank
+     * @param params synthesis params, or null for the defaults
+     * @param audioCallback callback for each audio segment, or null to return the whole audio
+     * @return the audio samples, or null when a callback is provided
+     * @throws IOException if the host is unreachable or fails to generate the audio
+     */
+    @Override
+    public synchronized short[] textToAudio(
+            int voiceRef,
+            String text,
+            PiperSynthesisParams params,
+            PiperJNI.AudioCallback audioCallback)
+            throws IOException {
+        RemoteVoice voice = getVoice(voiceRef);
+        PiperSynthesisParams requestParams = params != null ? params : new PiperSynthesisParams();
+        if (audioCallback != null) {
+            try {
+                textToAudio(voice, text, requestParams, audioCallback);
+            } catch (HostException e) {
+                throw e;
+            } catch (IOException e) {
+                disconnect();
+                throw e;
+            }
+            return null;
+        }
+        for (int attempt = 0; ; attempt++) {
+            List<short[]> chunks = new ArrayList<>();
+            try {
+                textToAudio(voice, text, requestParams, chunks::add);
+            } catch (IOException e) {
+                retryOrThrow(attempt, e);
+                continue;
+            }
+            int numSamples = chunks.stream().mapToInt(chunk -> chunk.length).sum();
+            short[] samples = new short[numSamples];
+            int offset = 0;
+            for (short[] chunk : chunks) {
+                System.arraycopy(chunk, 0, samples, offset, chunk.length);
+                offset += chunk.length;
+            }
+            return samples;
+        }
+    }
+
+    private void textToAudio(
+            RemoteVoice voice,
+            String text,
+            PiperSynthesisParams params,
+            PiperJNI.AudioCallback audioCallback)
+            throws IOException {
+        connect();
+        out.writeInt(HostProtocol.TEXT_TO_AUDIO);
+        out.writeInt(voice.remoteId);
+        HostProtocol.writeString(out, text);
+        HostProtocol.writeParams(out, params);
+        out.flush();
+        try {
+            while (true) {
+                int opcode = in.readInt();
+                switch (opcode) {
+                    case HostProtocol.AUDIO -> {
+                        short[] samples = sharedAudio.read(in.readInt());
+                        out.writeInt(HostProtocol.AUDIO_ACK);
+                        out.flush();
+                        audioCallback.onAudio(samples);
+                    }
+                    case HostProtocol.TIMING -> audioCallback.onTiming(HostProtocol.readTiming(in));
+                    case HostProtocol.AUDIO_END -> {
+                        return;
+                    }
+                    case HostProtocol.ERROR -> throw new HostException(HostProtocol.readString(in));
+                    default -> throw new IOException("Unexpected opcode " + opcode);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            // the rest of the stream is still pending, the connection can not be reused
+            disconnect();
+            throw e;
+        }
+    }
+
+    private RemoteVoice getVoice(int voiceRef) {
+        RemoteVoice voice = voices.get(voiceRef);
+        if (voice == null) {
+            throw new IllegalStateException("Unknown voice " + voiceRef);
+        }
+        return voice;
+    }
+
+    private void register(RemoteVoice voice) throws IOException {
+        out.writeInt(HostProtocol.LOAD_VOICE);
+        HostProtocol.writeString(out, voice.modelPath);
+        HostProtocol.writeString(out, voice.modelConfigPath);
+        out.writeLong(voice.speakerId);
+        out.flush();
+        readReply();
+        voice.remoteId = in.readInt();
+        voice.sampleRate = in.readInt();
+        voice.usesESpeakPhonemes = in.readBoolean();
+    }
+
+    private void readReply() throws IOException {
+        int opcode = in.readInt();
+        if (opcode == HostProtocol.ERROR) {
+            throw new HostException(HostProtocol.readString(in));
+        }
+        if (opcode != HostProtocol.OK) {
+            throw new IOException("Unexpected opcode " + opcode);
+        }
+    }
+
+    private void retryOrThrow(int attempt, IOException e) throws IOException {
+        if (e instanceof HostException) {
+            // the host is alive and rejected the request
+            throw e;
+        }
+        disconnect();
+        if (attempt > 0) {
+            throw e;
+        }
+    }
+
+    private void retryOrThrowUnchecked(int attempt, IOException e) {
+        try {
+            retryOrThrow(attempt, e);
+        } catch (IOException rethrown) {
+            throw new UncheckedIOException(rethrown);
+        }
+    }
+
+    private void connect() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + HOST_STARTUP_TIMEOUT_MILLIS;
+        SocketChannel newChannel = null;
+        while (newChannel == null) {
+            try {
+                newChannel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+            } catch (IOException e) {
+                if (!launchHost || System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                launchHost();
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for piper host");
+                }
+            }
+        }
+        channel = newChannel;
+        try {
+            in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            if (in.readInt() != HostProtocol.HELLO) {
+                throw new IOException("Unexpected host greeting");
+            }
+            int version = in.readInt();
+            if (version != HostProtocol.VERSION) {
+                throw new IOException("Unsupported host protocol version " + version);
+            }
+            sharedAudio = HostProtocol.SharedAudio.open(Path.of(HostProtocol.readString(in)));
+            // the host unlinks the file once it is mapped on both sides
+            out.writeInt(HostProtocol.HELLO_ACK);
+            out.flush();
+            // a new host has no voices, load the ones this engine was using
+            for (RemoteVoice voice : voices.values()) {
+                register(voice);
+            }
+        } catch (IOException e) {
+            disconnect();
+            throw e;
+        }
+    }
+
+    private void launchHost() throws IOException {
+        if (hostProcess != null && hostProcess.isAlive()) {
+            return;
+        }
+        String java =
+                ProcessHandle.current()
+                        .info()
+                        .command()
+                        .orElse(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        String libDir = System.getProperty("io.github.jvoiceproject.piperjni.libdir");
+        if (libDir != null) {
+            command.add("-Dio.github.jvoiceproject.piperjni.libdir=" + libDir);
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(PiperHost.class.getName());
+        command.add(socketPath.toAbsolutePath().toString());
+        hostProcess = new ProcessBuilder(command).inheritIO().start();
+    }
+
+    private void disconnect() {
+        try {
+            if (sharedAudio != null) {
+                sharedAudio.close();
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException ignored) {
+        }
+        sharedAudio = null;
+        channel = null;
+        in = null;
+        out = null;
+    }
+
+    @Override
+    public synchronized void close() {
+        voices.clear();
+        disconnect();
+    }
+
+    /** Emitted when the host rejects a request. */
+    public static class HostException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private HostException(String message) {
+            super(message);
+        }
+    }
+
+    /** A voice loaded in the host, registered again when the engine reconnects. */
+    private static class RemoteVoice {
+        private final String modelPath;
+        private final String modelConfigPath;
+        private final long speakerId;
+        private int remoteId;
+        private int sampleRate;
+        private boolean usesESpeakPhonemes;
+
+        private RemoteVoice(String modelPath, String modelConfigPath, long speakerId) {
+            this.modelPath = modelPath;
+            this.modelConfigPath = modelConfigPath;
+            this.speakerId = speakerId;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni;
+
+/**
+ * Synthesized audio and its phoneme timing.
+ *
+ * @param samples the audio samples
+ * @param timing the phoneme timing, empty if the voice model does not report it
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public record PiperAudio(short[] samples, PiperTimingTrack timing) {}
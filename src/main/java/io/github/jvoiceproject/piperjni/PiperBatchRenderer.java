@@ -0,0 +1,505 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+
+import io.github.jvoiceproject.piperjni.internal.JsonParser;
+import io.github.jvoiceproject.piperjni.internal.WavWriter;
+
+/**
+ * Renders a manifest of texts to WAV files using a pool of voice instances.
+ *
+ * <p>The manifest is a JSON Lines file, one item per line:
+ *
+ * <pre>{@code
+ * {"id": "chapter-01", "voice": "narrator", "text": "...", "options": {"gain": 0.8}}
+ * }</pre>
+ *
+ * <p>The voice is the name given to {@link #addVoice}, the options are the {@link
+ * PiperSynthesisParams} field names and are optional. Each item is streamed to {@code <id>.wav} in
+ * the output directory and its id is appended to a checkpoint file there once the file is complete,
+ * so rendering the same manifest again skips the completed items. Ids must be unique ignoring case,
+ * as they name files on file systems that may not be case sensitive.
+ *
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public class PiperBatchRenderer implements AutoCloseable {
+    /** Checkpoint file name, created in the output directory. */
+    public static final String CHECKPOINT_FILE = ".piper-checkpoint";
+
+    private static final Pattern ID_PATTERN = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]*");
+
+    private final PiperJNI piper;
+    private final Map<String, List<PiperVoice>> voiceInstances = new LinkedHashMap<>();
+    private final List<PiperVoice> voices = new ArrayList<>();
+    private int threads;
+
+    /**
+     * Creates a new batch renderer.
+     *
+     * @param piper an initialized {@link PiperJNI} instance
+     */
+    public PiperBatchRenderer(PiperJNI piper) {
+        this.piper = piper;
+    }
+
+    /**
+     * Loads the instances of a voice used to render the manifest items that reference its name.
+     *
+     * <p>Each instance renders one item at a time, so the number of instances is the number of
+     * items of this voice rendered in parallel.
+     *
+     * @param name voice name used in the manifest
+     * @param modelPath model file path
+     * @param modelConfigPath model config file path
+     * @param speakerId Speaker id or -1.
+     * @param instances number of voice instances to load
+     * @throws FileNotFoundException if models or config doesn't exist
+     * @throws PiperJNI.NotInitialized if piper was not initialized
+     */
+    public synchronized void addVoice(
+            String name, Path modelPath, Path modelConfigPath, long speakerId, int instances)
+            throws FileNotFoundException, PiperJNI.NotInitialized {
+        if (instances < 1) {
+            throw new IllegalArgumentException("At least one voice instance is required");
+        }
+        if (voiceInstances.containsKey(name)) {
+            throw new IllegalArgumentException("Voice '" + name + "' already added");
+        }
+        List<PiperVoice> instanceList = new ArrayList<>(instances);
+        try {
+            for (int i = 0; i < instances; i++) {
+                instanceList.add(piper.loadVoice(modelPath, modelConfigPath, speakerId));
+            }
+        } catch (FileNotFoundException | PiperJNI.NotInitialized | RuntimeException e) {
+            instanceList.forEach(PiperVoice::close);
+            throw e;
+        }
+        voices.addAll(instanceList);
+        voiceInstances.put(name, instanceList);
+    }
+
+    /**
+     * Sets the maximum number of items rendered in parallel, by default one per loaded voice
+     * instance.
+     *
+     * <p>Each voice instance renders the items of its voice from its own worker, the limit is
+     * shared by all of them.
+     *
+     * @param threads maximum number of items rendered in parallel, or 0 for no limit
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(0, threads);
+    }
+
+    /**
+     * Renders the manifest items not present in the output directory checkpoint.
+     *
+     * <p>The whole manifest is validated before rendering starts. Items that fail to render are
+     * reported to the listener and retried by the next run.
+     *
+     * @param manifestPath the manifest file path
+     * @param outputDir the output directory, created if missing
+     * @param listener progress listener, or null
+     * @return the final progress
+     * @throws IOException if the manifest is invalid or the checkpoint can not be written
+     * @throws InterruptedException if interrupted while rendering
+     */
+    public Progress render(Path manifestPath, Path outputDir, ProgressListener listener)
+            throws IOException, InterruptedException {
+        List<Item> items = readManifest(manifestPath);
+        Files.createDirectories(outputDir);
+        Path checkpointPath = outputDir.resolve(CHECKPOINT_FILE);
+        Set<String> completedIds = readCheckpoint(checkpointPath);
+        ProgressTracker tracker = new ProgressTracker(items.size(), listener);
+        // items are queued per voice, so a busy voice never holds workers another voice could use
+        Map<String, Queue<Item>> pending = new LinkedHashMap<>();
+        for (Item item : items) {
+            if (completedIds.contains(item.id) && Files.exists(outputPath(outputDir, item))) {
+                tracker.skipped();
+            } else {
+                pending.computeIfAbsent(item.voice, voice -> new ConcurrentLinkedQueue<>())
+                        .add(item);
+            }
+        }
+        if (pending.isEmpty()) {
+            return tracker.snapshot();
+        }
+        Semaphore slots = threads > 0 ? new Semaphore(threads) : null;
+        ExecutorService executor =
+                Executors.newCachedThreadPool(
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "piper-batch");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        try (BufferedWriter checkpoint =
+                Files.newBufferedWriter(
+                        checkpointPath,
+                        StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Map.Entry<String, Queue<Item>> voiceItems : pending.entrySet()) {
+                Queue<Item> queue = voiceItems.getValue();
+                for (PiperVoice voice : voiceInstances.get(voiceItems.getKey())) {
+                    futures.add(
+                            executor.submit(
+                                    () -> {
+                                        Item item;
+                                        while ((item = queue.poll()) != null) {
+                                            if (slots != null) {
+                                                slots.acquire();
+                                            }
+                                            try {
+                                                renderItem(
+                                                        voice,
+                                                        item,
+                                                        outputDir,
+                                                        checkpoint,
+                                                        tracker);
+                                            } finally {
+                                                if (slots != null) {
+                                                    slots.release();
+                                                }
+                                            }
+                                        }
+                                        return null;
+                                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof InterruptedException) {
+                        throw (InterruptedException) cause;
+                    }
+                    throw new IOException(cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return tracker.snapshot();
+    }
+
+    private void renderItem(
+            PiperVoice voice,
+            Item item,
+            Path outputDir,
+            BufferedWriter checkpoint,
+            ProgressTracker tracker)
+            throws IOException {
+        Path outputPath = outputPath(outputDir, item);
+        Path partPath = outputDir.resolve(item.id + ".wav.part");
+        long numSamples;
+        int sampleRate;
+        try {
+            sampleRate = voice.getSampleRate();
+            try (WavWriter writer = new WavWriter(partPath, sampleRate)) {
+                piper.textToAudio(
+                        voice,
+                        item.text,
+                        item.params,
+                        samples -> {
+                            try {
+                                writer.write(samples);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                numSamples = writer.getNumSamples();
+            }
+            Files.move(
+                    partPath,
+                    outputPath,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            Files.deleteIfExists(partPath);
+            tracker.failed(item.id, e instanceof UncheckedIOException ? e.getCause() : e);
+            return;
+        }
+        // a failure writing the checkpoint stops the run, otherwise reruns would render again
+        synchronized (checkpoint) {
+            checkpoint.write(item.id);
+            checkpoint.newLine();
+            checkpoint.flush();
+        }
+        tracker.completed((double) numSamples / sampleRate);
+    }
+
+    private List<Item> readManifest(Path manifestPath) throws IOException {
+        List<Item> items = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        try (BufferedReader reader =
+                Files.newBufferedReader(manifestPath, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                Item item;
+                try {
+                    item = parseItem(line);
+                } catch (IOException e) {
+                    throw new IOException(
+                            "Invalid manifest line " + lineNumber + ": " + e.getMessage(), e);
+                }
+                // "Item-1" and "item-1" would write the same file on case insensitive file systems
+                if (!ids.add(item.id.toLowerCase(Locale.ROOT))) {
+                    throw new IOException(
+                            "Invalid manifest line " + lineNumber + ": duplicated id " + item.id);
+                }
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    private Item parseItem(String line) throws IOException {
+        Map<String, Object> json = JsonParser.parseObject(line);
+        String id = requireString(json, "id");
+        if (!ID_PATTERN.matcher(id).matches()) {
+            throw new IOException("id must be a valid file name, got '" + id + "'");
+        }
+        String voice = requireString(json, "voice");
+        if (!voiceInstances.containsKey(voice)) {
+            throw new IOException("unknown voice '" + voice + "'");
+        }
+        String text = requireString(json, "text");
+        Object options = json.get("options");
+        PiperSynthesisParams params = null;
+        if (options != null) {
+            if (!(options instanceof Map)) {
+                throw new IOException("options must be an object");
+            }
+            params = new PiperSynthesisParams();
+            for (Map.Entry<?, ?> option : ((Map<?, ?>) options).entrySet()) {
+                applyOption(params, (String) option.getKey(), option.getValue());
+            }
+        }
+        return new Item(id, voice, text, params);
+    }
+
+    private static void applyOption(PiperSynthesisParams params, String name, Object value)
+            throws IOException {
+        try {
+            switch (name) {
+                case "gain" -> params.gain = ((Number) value).floatValue();
+                case "normalization" ->
+                        params.normalization =
+                                PiperSynthesisParams.Normalization.valueOf(
+                                        ((String) value).toUpperCase(Locale.ROOT));
+                case "normalizationTarget" ->
+                        params.normalizationTarget = ((Number) value).floatValue();
+                case "trimSilenceThreshold" ->
+                        params.trimSilenceThreshold = ((Number) value).floatValue();
+                case "sentenceSilence" -> params.sentenceSilence = ((Number) value).floatValue();
+                default -> throw new IOException("unknown option '" + name + "'");
+            }
+        } catch (ClassCastException | IllegalArgumentException e) {
+            throw new IOException("invalid value for option '" + name + "'");
+        }
+    }
+
+    private static String requireString(Map<String, Object> json, String key) throws IOException {
+        Object value = json.get(key);
+        if (!(value instanceof String)) {
+            throw new IOException("'" + key + "' is required");
+        }
+        return (String) value;
+    }
+
+    private static Set<String> readCheckpoint(Path checkpointPath) throws IOException {
+        Set<String> ids = new HashSet<>();
+        if (Files.exists(checkpointPath)) {
+            for (String line : Files.readAllLines(checkpointPath, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    ids.add(line.strip());
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static Path outputPath(Path outputDir, Item item) {
+        return outputDir.resolve(item.id + ".wav");
+    }
+
+    @Override
+    public synchronized void close() {
+        voices.forEach(PiperVoice::close);
+        voices.clear();
+        voiceInstances.clear();
+    }
+
+    /**
+     * Batch progress.
+     *
+     * @param total number of items in the manifest
+     * @param completed number of items rendered by this run
+     * @param skipped number of items skipped because a previous run completed them
+     * @param failed number of items that failed to render
+     * @param audioSeconds seconds of audio rendered by this run
+     * @param elapsedNanos nanoseconds since the run started
+     */
+    public record Progress(
+            int total,
+            int completed,
+            int skipped,
+            int failed,
+            double audioSeconds,
+            long elapsedNanos) {
+        /**
+         * Get the number of items that are not pending.
+         *
+         * @return completed, skipped and failed items
+         */
+        public int processed() {
+            return completed + skipped + failed;
+        }
+
+        /**
+         * Get the rendered items per second.
+         *
+         * @return the items rendered by this run per wall clock second
+         */
+        public double itemsPerSecond() {
+            return elapsedNanos > 0 ? completed / (elapsedNanos / 1e9) : 0;
+        }
+
+        /**
+         * Get the rendered audio seconds per wall clock second, the inverse of the real time factor
+         * across all workers.
+         *
+         * @return audio seconds per second
+         */
+        public double audioSecondsPerSecond() {
+            return elapsedNanos > 0 ? audioSeconds / (elapsedNanos / 1e9) : 0;
+        }
+    }
+
+    /**
+     * Receives the batch progress.
+     *
+     * <p>Called from the worker threads, one call at a time.
+     */
+    public interface ProgressListener {
+        /**
+         * Called after each item is completed, skipped or failed.
+         *
+         * @param progress the current progress
+         */
+        void onProgress(Progress progress);
+
+        /**
+         * Called when an item fails to render, before {@link #onProgress}.
+         *
+         * @param id the item id
+         * @param error the failure cause
+         */
+        default void onItemFailed(String id, Throwable error) {}
+    }
+
+    private record Item(String id, String voice, String text, PiperSynthesisParams params) {}
+
+    private static class ProgressTracker {
+        private final int total;
+        private final ProgressListener listener;
+        private final long startNanos = System.nanoTime();
+        private int completed;
+        private int skipped;
+        private int failed;
+        private double audioSeconds;
+
+        private ProgressTracker(int total, ProgressListener listener) {
+            this.total = total;
+            this.listener = listener;
+        }
+
+        private synchronized void completed(double seconds) {
+            completed++;
+            audioSeconds += seconds;
+            notifyListener();
+        }
+
+        private synchronized void skipped() {
+            skipped++;
+            notifyListener();
+        }
+
+        private synchronized void failed(String id, Throwable error) {
+            failed++;
+            if (listener != null) {
+                listener.onItemFailed(id, error);
+            }
+            notifyListener();
+        }
+
+        private synchronized Progress snapshot() {
+            return new Progress(
+                    total,
+                    completed,
+                    skipped,
+                    failed,
+                    audioSeconds,
+                    System.nanoTime() - startNanos);
+        }
+
+        private void notifyListener() {
+            if (listener != null) {
+                listener.onProgress(snapshot());
+            }
+        }
+    }
+}
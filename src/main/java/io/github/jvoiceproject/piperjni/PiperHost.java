@@ -0,0 +1,437 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.jvoiceproject.piperjni.internal.HostProtocol;
+import jdk.net.ExtendedSocketOptions;
+
+/**
+ * Standalone process that owns the {@link PiperVoice} instances of a node and serves them to {@link
+ * HostSynthesisEngine} instances from any number of JVMs through a Unix domain socket.
+ *
+ * <p>Voices are shared between clients, a voice requested with the same model, config and speaker
+ * id is loaded only once. Audio is transferred through a memory mapped file per connection, only
+ * accessible by the host user and unlinked as soon as the client has mapped it.
+ *
+ * <p>The socket only accepts connections from the host user, its permissions are restricted to the
+ * owner and, where the platform reports the peer credentials, connections from other users are
+ * closed.
+ *
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public class PiperHost implements AutoCloseable {
+
+    private final PiperJNI piper;
+    private final Path socketPath;
+    private final Map<String, SharedVoice> voicesByKey = new HashMap<>();
+    private final Map<Integer, SharedVoice> voicesById = new HashMap<>();
+    private final AtomicInteger nextConnectionId = new AtomicInteger();
+    private final ExecutorService executor =
+            Executors.newCachedThreadPool(
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "piper-host");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+    private ServerSocketChannel serverChannel;
+    private int nextVoiceId;
+
+    /**
+     * Creates a new host.
+     *
+     * @param piper an initialized {@link PiperJNI} instance
+     * @param socketPath Unix domain socket path to listen on
+     */
+    public PiperHost(PiperJNI piper, Path socketPath) {
+        this.piper = piper;
+        this.socketPath = socketPath;
+    }
+
+    /**
+     * Binds the socket and starts accepting clients in background.
+     *
+     * @throws IOException if the socket is in use by a running host or can not be bound
+     */
+    public synchronized void start() throws IOException {
+        if (serverChannel != null) {
+            return;
+        }
+        if (Files.exists(socketPath)) {
+            if (isListening(socketPath)) {
+                throw new IOException("A piper host is already listening on " + socketPath);
+            }
+            // stale socket file from a crashed host
+            Files.deleteIfExists(socketPath);
+        }
+        ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        UserPrincipal owner;
+        try {
+            channel.bind(UnixDomainSocketAddress.of(socketPath));
+            if (socketPath.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                Files.setPosixFilePermissions(
+                        socketPath, PosixFilePermissions.fromString("rw-------"));
+            }
+            owner = Files.getOwner(socketPath);
+        } catch (IOException e) {
+            channel.close();
+            Files.deleteIfExists(socketPath);
+            throw e;
+        }
+        serverChannel = channel;
+        executor.execute(() -> acceptLoop(channel, owner));
+    }
+
+    /**
+     * Get the socket path the host listens on.
+     *
+     * @return the socket path
+     */
+    public Path getSocketPath() {
+        return socketPath;
+    }
+
+    private void acceptLoop(ServerSocketChannel serverChannel, UserPrincipal owner) {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                if (!isOwner(channel, owner)) {
+                    // connected before the socket permissions were restricted
+                    channel.close();
+                    continue;
+                }
+                executor.execute(() -> serve(channel));
+            } catch (IOException e) {
+                if (serverChannel.isOpen()) {
+                    System.err.println("piper-host: accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        // LOAD_VOICE requests for the same voice return the same id, references are counted
+        Map<Integer, Integer> ownedVoices = new HashMap<>();
+        Path sharedPath =
+                HostProtocol.sharedMemoryDir()
+                        .resolve(
+                                "piper-host-"
+                                        + ProcessHandle.current().pid()
+                                        + "-"
+                                        + nextConnectionId.incrementAndGet()
+                                        + ".pcm");
+        try (channel;
+                HostProtocol.SharedAudio sharedAudio =
+                        HostProtocol.SharedAudio.create(sharedPath, 64 * 1024)) {
+            var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            var out =
+                    new DataOutputStream(
+                            new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(HostProtocol.HELLO);
+            out.writeInt(HostProtocol.VERSION);
+            HostProtocol.writeString(out, sharedPath.toAbsolutePath().toString());
+            out.flush();
+            int ack = in.readInt();
+            if (ack != HostProtocol.HELLO_ACK) {
+                throw new IOException("Expected hello ack, got " + ack);
+            }
+            // both sides keep their mapping, the name is not needed anymore
+            sharedAudio.unlink();
+            while (true) {
+                int opcode = in.readInt();
+                switch (opcode) {
+                    case HostProtocol.LOAD_VOICE -> {
+                        String model = HostProtocol.readString(in);
+                        String config = HostProtocol.readString(in);
+                        long speakerId = in.readLong();
+                        try {
+                            SharedVoice voice = acquireVoice(model, config, speakerId);
+                            ownedVoices.merge(voice.id, 1, Integer::sum);
+                            out.writeInt(HostProtocol.OK);
+                            out.writeInt(voice.id);
+                            PiperVoice piperVoice = voice.voice.join();
+                            out.writeInt(piperVoice.getSampleRate());
+                            out.writeBoolean(piperVoice.getUsesESpeakPhonemes());
+                        } catch (Exception e) {
+                            writeError(out, e);
+                        }
+                    }
+                    case HostProtocol.FREE_VOICE -> {
+                        int voiceId = in.readInt();
+                        Integer references = ownedVoices.get(voiceId);
+                        if (references != null) {
+                            if (references == 1) {
+                                ownedVoices.remove(voiceId);
+                            } else {
+                                ownedVoices.put(voiceId, references - 1);
+                            }
+                            releaseVoice(voiceId);
+                        }
+                        out.writeInt(HostProtocol.OK);
+                    }
+                    case HostProtocol.TEXT_TO_AUDIO -> {
+                        int voiceId = in.readInt();
+                        String text = HostProtocol.readString(in);
+                        PiperSynthesisParams params = HostProtocol.readParams(in);
+                        textToAudio(ownedVoices, voiceId, text, params, in, out, sharedAudio);
+                    }
+                    case HostProtocol.GET_VERSION -> {
+                        out.writeInt(HostProtocol.OK);
+                        HostProtocol.writeString(out, piper.getPiperVersion());
+                    }
+                    default -> throw new IOException("Unknown opcode " + opcode);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // client disconnected
+        } finally {
+            for (Map.Entry<Integer, Integer> owned : ownedVoices.entrySet()) {
+                for (int i = 0; i < owned.getValue(); i++) {
+                    releaseVoice(owned.getKey());
+                }
+            }
+        }
+    }
+
+    private void textToAudio(
+            Map<Integer, Integer> ownedVoices,
+            int voiceId,
+            String text,
+            PiperSynthesisParams params,
+            DataInputStream in,
+            DataOutputStream out,
+            HostProtocol.SharedAudio sharedAudio)
+            throws IOException {
+        SharedVoice voice;
+        synchronized (this) {
+            voice = ownedVoices.containsKey(voiceId) ? voicesById.get(voiceId) : null;
+        }
+        if (voice == null) {
+            writeError(out, new IllegalArgumentException("Unknown voice " + voiceId));
+            return;
+        }
+        try {
+            // piper synthesizer state is per voice, clients sharing a voice are serialized
+            synchronized (voice) {
+                piper.textToAudio(
+                        voice.voice.join(),
+                        text,
+                        params,
+                        new PiperJNI.AudioCallback() {
+                            @Override
+                            public void onAudio(short[] samples) {
+                                try {
+                                    sharedAudio.write(samples);
+                                    out.writeInt(HostProtocol.AUDIO);
+                                    out.writeInt(samples.length);
+                                    out.flush();
+                                    int ack = in.readInt();
+                                    if (ack != HostProtocol.AUDIO_ACK) {
+                                        throw new IOException("Expected audio ack, got " + ack);
+                                    }
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            }
+
+                            @Override
+                            public void onTiming(PiperTimingTrack timing) {
+                                try {
+                                    // flushed with the audio chunk that follows
+                                    out.writeInt(HostProtocol.TIMING);
+                                    HostProtocol.writeTiming(out, timing);
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            }
+                        });
+            }
+            out.writeInt(HostProtocol.AUDIO_END);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (Exception e) {
+            writeError(out, e);
+        }
+    }
+
+    private SharedVoice acquireVoice(String model, String config, long speakerId) throws Exception {
+        String key = model + '\0' + config + '\0' + speakerId;
+        SharedVoice voice;
+        boolean load;
+        synchronized (this) {
+            voice = voicesByKey.get(key);
+            load = voice == null;
+            if (load) {
+                voice = new SharedVoice(nextVoiceId++, key);
+                voicesByKey.put(key, voice);
+                voicesById.put(voice.id, voice);
+            }
+            voice.references++;
+        }
+        if (load) {
+            // loading takes seconds, other connections keep being served meanwhile
+            try {
+                voice.voice.complete(piper.loadVoice(Path.of(model), Path.of(config), speakerId));
+            } catch (Exception | Error e) {
+                synchronized (this) {
+                    voicesByKey.remove(key, voice);
+                    voicesById.remove(voice.id, voice);
+                }
+                voice.voice.completeExceptionally(e);
+            }
+        }
+        try {
+            voice.voice.join();
+            return voice;
+        } catch (CompletionException e) {
+            releaseVoice(voice);
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void releaseVoice(int voiceId) {
+        SharedVoice voice;
+        synchronized (this) {
+            voice = voicesById.get(voiceId);
+        }
+        if (voice != null) {
+            releaseVoice(voice);
+        }
+    }
+
+    private void releaseVoice(SharedVoice voice) {
+        synchronized (this) {
+            if (--voice.references > 0) {
+                return;
+            }
+            voicesById.remove(voice.id, voice);
+            voicesByKey.remove(voice.key, voice);
+        }
+        voice.voice.thenAccept(PiperVoice::close);
+    }
+
+    private static boolean isOwner(SocketChannel channel, UserPrincipal owner) throws IOException {
+        if (!channel.supportedOptions().contains(ExtendedSocketOptions.SO_PEERCRED)) {
+            // the socket file permissions are the only check
+            return true;
+        }
+        return owner.equals(channel.getOption(ExtendedSocketOptions.SO_PEERCRED).user());
+    }
+
+    private static boolean isListening(Path socketPath) {
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(socketPath)).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void writeError(DataOutputStream out, Exception e) throws IOException {
+        out.writeInt(HostProtocol.ERROR);
+        HostProtocol.writeString(
+                out, e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (serverChannel != null) {
+            serverChannel.close();
+            serverChannel = null;
+            Files.deleteIfExists(socketPath);
+        }
+        executor.shutdownNow();
+        for (SharedVoice voice : voicesById.values()) {
+            voice.voice.thenAccept(PiperVoice::close);
+        }
+        voicesById.clear();
+        voicesByKey.clear();
+    }
+
+    /**
+     * Runs a host until the process is terminated.
+     *
+     * @param args the socket path
+     * @throws IOException if piper initialization or socket binding fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: PiperHost <socket path>");
+            System.exit(1);
+        }
+        PiperJNI piper = new PiperJNI();
+        piper.initialize(true);
+        PiperHost host = new PiperHost(piper, Path.of(args[0]));
+        Runtime.getRuntime()
+                .addShutdownHook(
+                        new Thread(
+                                () -> {
+                                    try {
+                                        host.close();
+                                    } catch (IOException ignored) {
+                                    }
+                                    piper.close();
+                                }));
+        host.start();
+        try {
+            Thread.currentThread().join();
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private static class SharedVoice {
+        private final int id;
+        private final String key;
+        // completed once by the connection that requested the voice first
+        private final CompletableFuture<PiperVoice> voice = new CompletableFuture<>();
+        private int references;
+
+        private SharedVoice(int id, String key) {
+            this.id = id;
+            this.key = key;
+        }
+    }
+}
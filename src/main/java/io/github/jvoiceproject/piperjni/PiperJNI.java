@@ -21,8 +21,18 @@ package io.github.jvoiceproject.piperjni;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import io.github.jvoiceproject.piperjni.internal.NativeUtils;
 
@@ -34,6 +44,18 @@ import io.github.jvoiceproject.piperjni.internal.NativeUtils;
 public class PiperJNI implements AutoCloseable {
 
     private static boolean libraryLoaded;
+    private static volatile long nativeMemoryLimit;
+    private static final Object MEMORY_LIMIT_LOCK = new Object();
+    // model bytes of the native voices being loaded, guarded by MEMORY_LIMIT_LOCK
+    private static long reservedBytes;
+
+    /**
+     * Native voices not yet closed, shared by all instances as the native memory limit is global.
+     * Voices of other engines hold no memory of the native library and are not accounted.
+     */
+    static final Set<PiperVoice> loadedVoices = ConcurrentHashMap.newKeySet();
+
+    final SynthesisEngine engine;
     private String currentESpeakDataPath;
     private boolean initialized;
 
@@ -48,11 +70,14 @@ public class PiperJNI implements AutoCloseable {
 
     protected native int voiceSampleRate(int voiceRef);
 
-    private native short[] textToAudio(int voiceRef, String text, AudioCallback audioCallback)
+    private native short[] textToAudio(
+            int voiceRef, String text, PiperSynthesisParams params, AudioCallback audioCallback)
             throws IOException;
 
     private native String getVersion();
 
+    protected static native long[] voiceMemoryUsage(int voiceRef);
+
     // endregion
 
     /**
@@ -62,6 +87,20 @@ public class PiperJNI implements AutoCloseable {
      */
     public PiperJNI() throws IOException {
         loadLibrary();
+        this.engine = new NativeEngine();
+    }
+
+    /**
+     * Creates a new Piper instance backed by another synthesis engine, like the {@link
+     * StubSynthesisEngine} used to test the Java layers without the native library.
+     *
+     * @param engine the {@link SynthesisEngine} to use
+     */
+    public PiperJNI(SynthesisEngine engine) {
+        if (engine == null) {
+            throw new NullPointerException("Engine can not be null");
+        }
+        this.engine = engine;
     }
 
     /**
@@ -70,8 +109,7 @@ public class PiperJNI implements AutoCloseable {
      * @return piper library version.
      */
     public String getPiperVersion() {
-        assertRegistered();
-        return getVersion();
+        return engine.getVersion();
     }
 
     /**
@@ -90,9 +128,8 @@ public class PiperJNI implements AutoCloseable {
      * @throws IOException if initialization fails.
      */
     public void initialize(boolean useESpeakPhonemes) throws IOException {
-        assertRegistered();
         if (useESpeakPhonemes) {
-            Path path = NativeUtils.getESpeakNGData();
+            Path path = engine.getESpeakDataPath();
             if (path == null) {
                 this.currentESpeakDataPath = null;
             } else {
@@ -133,20 +170,110 @@ public class PiperJNI implements AutoCloseable {
      * @return a {@link PiperVoice} instance
      * @throws FileNotFoundException if models or config doesn't exist
      * @throws NotInitialized if piper was not initialized
+     * @throws NativeMemoryLimitExceeded if loading the voice would exceed the native memory limit
      */
     public PiperVoice loadVoice(Path modelPath, Path modelConfigPath, long speakerId)
             throws FileNotFoundException, NotInitialized {
-        assertRegistered();
         assertInitialized();
-        if (modelPath == null || !Files.exists(modelPath) || Files.isDirectory(modelPath)) {
-            throw new FileNotFoundException("Model file is required");
+        if (nativeMemoryLimit <= 0 || !(engine instanceof NativeEngine)) {
+            return registerVoice(modelPath, modelConfigPath, speakerId);
+        }
+        long required;
+        try {
+            // the model weights are the lower bound of the memory the session will hold
+            required = modelPath != null ? Files.size(modelPath) : 0;
+        } catch (IOException e) {
+            required = 0;
+        }
+        // reserve the model size so concurrent loads can not overcommit, loading takes seconds
+        // and runs outside the lock
+        synchronized (MEMORY_LIMIT_LOCK) {
+            long limit = nativeMemoryLimit;
+            long usage = getNativeMemoryUsage() + reservedBytes;
+            if (limit > 0 && usage + required > limit) {
+                throw new NativeMemoryLimitExceeded(usage, required, limit);
+            }
+            reservedBytes += required;
+        }
+        try {
+            return registerVoice(modelPath, modelConfigPath, speakerId);
+        } finally {
+            // once registered the voice reports its own usage
+            synchronized (MEMORY_LIMIT_LOCK) {
+                reservedBytes -= required;
+            }
         }
-        if (modelConfigPath == null
-                || !Files.exists(modelConfigPath)
-                || Files.isDirectory(modelConfigPath)) {
-            throw new FileNotFoundException("Model config file is required");
+    }
+
+    private PiperVoice registerVoice(Path modelPath, Path modelConfigPath, long speakerId)
+            throws FileNotFoundException {
+        PiperVoice voice =
+                new PiperVoice(this, currentESpeakDataPath, modelPath, modelConfigPath, speakerId);
+        if (engine instanceof NativeEngine) {
+            loadedVoices.add(voice);
+        }
+        return voice;
+    }
+
+    /**
+     * Get the estimated native memory held by all the voices loaded by the native library, see
+     * {@link PiperVoice#getMemoryUsage()}.
+     *
+     * <p>It is the sum of the voices {@link PiperMemoryUsage#residentBytes()} plus the largest
+     * synthesis peak, as the peaks are measured process-wide.
+     *
+     * @return the estimated bytes
+     */
+    public static long getNativeMemoryUsage() {
+        long residentBytes = 0;
+        long peakSynthesisBytes = 0;
+        for (PiperVoice voice : loadedVoices) {
+            try {
+                PiperMemoryUsage usage = voice.getMemoryUsage();
+                residentBytes += usage.residentBytes();
+                // the peaks are process-wide, summing them would count concurrent syntheses twice
+                peakSynthesisBytes = Math.max(peakSynthesisBytes, usage.peakSynthesisBytes());
+            } catch (RuntimeException e) {
+                // closed concurrently
+            }
+        }
+        return residentBytes + peakSynthesisBytes;
+    }
+
+    /**
+     * Get the native memory limit enforced when loading voices.
+     *
+     * @return the limit in bytes, 0 if disabled
+     */
+    public static long getNativeMemoryLimit() {
+        return nativeMemoryLimit;
+    }
+
+    /**
+     * Set a native memory limit shared by all the instances. When set, {@link #loadVoice(Path,
+     * Path, long)} fails if the estimated native memory of the loaded voices plus the model size of
+     * the voices being loaded, including the new one, exceeds it.
+     *
+     * @param limitBytes the limit in bytes, 0 to disable it
+     */
+    public static void setNativeMemoryLimit(long limitBytes) {
+        nativeMemoryLimit = Math.max(0, limitBytes);
+    }
+
+    /**
+     * Registers a {@link PiperMemoryMXBean} in the platform MBean server, does nothing if already
+     * registered.
+     *
+     * @throws JMException if the registration fails
+     */
+    public static void registerMemoryMXBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(PiperMemoryMXBean.OBJECT_NAME);
+        synchronized (PiperJNI.class) {
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new PiperMemoryMonitor(), name);
+            }
         }
-        return new PiperVoice(this, currentESpeakDataPath, modelPath, modelConfigPath, speakerId);
     }
 
     /**
@@ -159,11 +286,26 @@ public class PiperJNI implements AutoCloseable {
      * @throws NotInitialized if Piper is not initialized
      */
     public short[] textToAudio(PiperVoice voice, String text) throws IOException, NotInitialized {
-        return textToAudioImpl(voice, text, null);
+        return textToAudioImpl(voice, text, null, null);
+    }
+
+    /**
+     * Convert text to audio using the provided voice and synthesis params.
+     *
+     * @param voice {@link PiperVoice} instance to use.
+     * @param text Text to speak.
+     * @param params {@link PiperSynthesisParams} to use.
+     * @return The audio samples
+     * @throws IOException If generation fails.
+     * @throws NotInitialized if Piper is not initialized
+     */
+    public short[] textToAudio(PiperVoice voice, String text, PiperSynthesisParams params)
+            throws IOException, NotInitialized {
+        return textToAudioImpl(voice, text, params, null);
     }
 
     /**
-     * Convert text to audio using the provided voice and emit segments asynchronously.
+     * Convert text to audio using the provided voice and emit segments as they are generated.
      *
      * @param voice {@link PiperVoice} instance to use.
      * @param text Text to speak.
@@ -173,16 +315,95 @@ public class PiperJNI implements AutoCloseable {
      */
     public void textToAudio(PiperVoice voice, String text, AudioCallback audioCallback)
             throws IOException, NotInitialized {
-        textToAudioImpl(voice, text, audioCallback);
+        textToAudioImpl(voice, text, null, audioCallback);
+    }
+
+    /**
+     * Convert text to audio using the provided voice and synthesis params and emit segments as they
+     * are generated.
+     *
+     * @param voice {@link PiperVoice} instance to use.
+     * @param text Text to speak.
+     * @param params {@link PiperSynthesisParams} to use.
+     * @param audioCallback Callback for each audio segment.
+     * @throws IOException If generation fails.
+     * @throws NotInitialized if Piper is not initialized
+     */
+    public void textToAudio(
+            PiperVoice voice, String text, PiperSynthesisParams params, AudioCallback audioCallback)
+            throws IOException, NotInitialized {
+        textToAudioImpl(voice, text, params, audioCallback);
+    }
+
+    /**
+     * Convert text to audio using the provided voice and return it with its phoneme timing.
+     *
+     * @param voice {@link PiperVoice} instance to use.
+     * @param text Text to speak.
+     * @return The audio samples and timing
+     * @throws IOException If generation fails.
+     * @throws NotInitialized if Piper is not initialized
+     */
+    public PiperAudio textToAudioWithTiming(PiperVoice voice, String text)
+            throws IOException, NotInitialized {
+        return textToAudioWithTiming(voice, text, null);
+    }
+
+    /**
+     * Convert text to audio using the provided voice and synthesis params and return it with its
+     * phoneme timing, {@link PiperSynthesisParams#timing} is enabled regardless of its value.
+     *
+     * @param voice {@link PiperVoice} instance to use.
+     * @param text Text to speak.
+     * @param params {@link PiperSynthesisParams} to use, or null for the defaults.
+     * @return The audio samples and timing
+     * @throws IOException If generation fails.
+     * @throws NotInitialized if Piper is not initialized
+     */
+    public PiperAudio textToAudioWithTiming(
+            PiperVoice voice, String text, PiperSynthesisParams params)
+            throws IOException, NotInitialized {
+        PiperSynthesisParams timingParams =
+                params != null ? params.copy() : new PiperSynthesisParams();
+        timingParams.timing = true;
+        List<short[]> chunks = new ArrayList<>();
+        List<PiperTimingTrack> tracks = new ArrayList<>();
+        textToAudioImpl(
+                voice,
+                text,
+                timingParams,
+                new AudioCallback() {
+                    @Override
+                    public void onAudio(short[] audioSamples) {
+                        chunks.add(audioSamples);
+                    }
+
+                    @Override
+                    public void onTiming(PiperTimingTrack timing) {
+                        tracks.add(timing);
+                    }
+                });
+        short[] samples = new short[chunks.stream().mapToInt(chunk -> chunk.length).sum()];
+        int offset = 0;
+        for (short[] chunk : chunks) {
+            System.arraycopy(chunk, 0, samples, offset, chunk.length);
+            offset += chunk.length;
+        }
+        return new PiperAudio(
+                samples,
+                tracks.isEmpty() ? PiperTimingTrack.EMPTY : PiperTimingTrack.concat(tracks));
     }
 
-    private short[] textToAudioImpl(PiperVoice voice, String text, AudioCallback audioCallback)
+    private short[] textToAudioImpl(
+            PiperVoice voice, String text, PiperSynthesisParams params, AudioCallback audioCallback)
             throws IOException, NotInitialized {
-        assertRegistered();
         assertInitialized();
         if (voice == null) {
             throw new NullPointerException("Voice can not be null");
         }
+        if (voice.engine != engine) {
+            throw new IllegalArgumentException("Voice was loaded by another engine");
+        }
         if (text == null) {
             throw new NullPointerException("Text can not be null");
         }
@@ -190,7 +411,7 @@ public class PiperJNI implements AutoCloseable {
             // return empty.
             return new short[] {};
         }
-        return textToAudio(voice.ref, text, audioCallback);
+        return engine.textToAudio(voice.ref, text, params, audioCallback);
     }
 
     /**
@@ -264,7 +485,13 @@ public class PiperJNI implements AutoCloseable {
         terminate();
     }
 
-    /** Callback for streamed audio. */
+    /**
+     * Callback for streamed audio.
+     *
+     * <p>Segments are delivered in order, by the native library from a background thread while the
+     * following sentences are synthesized. An exception thrown by the callback stops the synthesis
+     * and is rethrown by {@code textToAudio}.
+     */
     public interface AudioCallback {
         /**
          * Called once on each generated voice segment.
@@ -272,6 +499,15 @@ public class PiperJNI implements AutoCloseable {
          * @param audioSamples The segment samples.
          */
         void onAudio(short[] audioSamples);
+
+        /**
+         * Called before {@link #onAudio} with the phoneme timing of the segment when {@link
+         * PiperSynthesisParams#timing} is enabled, the offsets are relative to the start of the
+         * stream.
+         *
+         * @param timing The segment timing.
+         */
+        default void onTiming(PiperTimingTrack timing) {}
     }
 
     /** Emitted if Piper instance was not initialized by calling the {@link #initialize} method. */
@@ -281,6 +517,124 @@ public class PiperJNI implements AutoCloseable {
         }
     }
 
+    /** Emitted if loading a voice would exceed the native memory limit. */
+    public static class NativeMemoryLimitExceeded extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private NativeMemoryLimitExceeded(long usage, long required, long limit) {
+            super(
+                    "Loading the voice requires at least "
+                            + required
+                            + " bytes, "
+                            + usage
+                            + " of "
+                            + limit
+                            + " bytes are in use");
+        }
+    }
+
+    /** {@link PiperMemoryMXBean} implementation backed by the voices accounting. */
+    private static class PiperMemoryMonitor implements PiperMemoryMXBean {
+        @Override
+        public long getNativeMemoryUsage() {
+            return PiperJNI.getNativeMemoryUsage();
+        }
+
+        @Override
+        public long getNativeMemoryLimit() {
+            return PiperJNI.getNativeMemoryLimit();
+        }
+
+        @Override
+        public void setNativeMemoryLimit(long limitBytes) {
+            PiperJNI.setNativeMemoryLimit(limitBytes);
+        }
+
+        @Override
+        public int getLoadedVoices() {
+            return loadedVoices.size();
+        }
+
+        @Override
+        public Map<String, Long> getVoiceMemoryUsage() {
+            Map<String, Long> usage = new TreeMap<>();
+            for (PiperVoice voice : loadedVoices) {
+                try {
+                    usage.put(
+                            voice.getModelPath().getFileName() + "#" + voice.ref,
+                            voice.getMemoryUsage().totalBytes());
+                } catch (RuntimeException e) {
+                    // closed concurrently
+                }
+            }
+            return usage;
+        }
+    }
+
+    /** {@link SynthesisEngine} backed by the native library. */
+    private class NativeEngine implements SynthesisEngine {
+        @Override
+        public String getVersion() {
+            assertRegistered();
+            return PiperJNI.this.getVersion();
+        }
+
+        @Override
+        public Path getESpeakDataPath() throws IOException {
+            assertRegistered();
+            return NativeUtils.getESpeakNGData();
+        }
+
+        @Override
+        public int loadVoice(
+                String espeakDataPath, Path modelPath, Path modelConfigPath, long speakerId)
+                throws FileNotFoundException {
+            assertRegistered();
+            if (modelPath == null || !Files.exists(modelPath) || Files.isDirectory(modelPath)) {
+                throw new FileNotFoundException("Model file is required");
+            }
+            if (modelConfigPath == null
+                    || !Files.exists(modelConfigPath)
+                    || Files.isDirectory(modelConfigPath)) {
+                throw new FileNotFoundException("Model config file is required");
+            }
+            return PiperJNI.this.loadVoice(
+                    espeakDataPath,
+                    modelPath.toAbsolutePath().toString(),
+                    modelConfigPath.toAbsolutePath().toString(),
+                    speakerId);
+        }
+
+        @Override
+        public void freeVoice(int voiceRef) {
+            PiperJNI.this.freeVoice(voiceRef);
+        }
+
+        @Override
+        public boolean voiceUsesESpeakPhonemes(int voiceRef) {
+            return PiperJNI.this.voiceUsesESpeakPhonemes(voiceRef);
+        }
+
+        @Override
+        public int voiceSampleRate(int voiceRef) {
+            return PiperJNI.this.voiceSampleRate(voiceRef);
+        }
+
+        @Override
+        public PiperMemoryUsage voiceMemoryUsage(int voiceRef) {
+            long[] usage = PiperJNI.voiceMemoryUsage(voiceRef);
+            return new PiperMemoryUsage(usage[0], usage[1], usage[2]);
+        }
+
+        @Override
+        public short[] textToAudio(
+                int voiceRef, String text, PiperSynthesisParams params, AudioCallback audioCallback)
+                throws IOException {
+            assertRegistered();
+            return PiperJNI.this.textToAudio(voiceRef, text, params, audioCallback);
+        }
+    }
+
     /**
      * In order to avoid sharing pointers between the C++ and Java, we use this util base class
      * which holds a random integer id generated in the whisper.cpp wrapper.
@@ -0,0 +1,68 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni;
+
+import java.util.Map;
+
+/**
+ * JMX view of the native memory held by the loaded voices, registered by {@link
+ * PiperJNI#registerMemoryMXBean()}.
+ *
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public interface PiperMemoryMXBean {
+    /** JMX object name of the bean. */
+    String OBJECT_NAME = "io.github.jvoiceproject.piperjni:type=NativeMemory";
+
+    /**
+     * Get the estimated native memory held by all the loaded voices.
+     *
+     * @return the estimated bytes
+     */
+    long getNativeMemoryUsage();
+
+    /**
+     * Get the native memory limit enforced when loading voices.
+     *
+     * @return the limit in bytes, 0 if disabled
+     */
+    long getNativeMemoryLimit();
+
+    /**
+     * Set the native memory limit enforced when loading voices.
+     *
+     * @param limitBytes the limit in bytes, 0 to disable it
+     */
+    void setNativeMemoryLimit(long limitBytes);
+
+    /**
+     * Get the number of loaded voices.
+     *
+     * @return the number of loaded voices
+     */
+    int getLoadedVoices();
+
+    /**
+     * Get the estimated native memory held by each loaded voice.
+     *
+     * @return the estimated bytes by voice name
+     */
+    Map<String, Long> getVoiceMemoryUsage();
+}
@@ -0,0 +1,57 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni;
+
+/**
+ * Native memory accounting of a loaded voice.
+ *
+ * <p>ONNX Runtime and eSpeak do not report their allocations, so the loaded and synthesis sizes are
+ * measured as growth of the process resident memory and are approximations.
+ *
+ * <p>The synthesis peak is process-wide: it is the resident memory growth of the whole process
+ * while the voice was synthesizing, so it also includes the allocations of any synthesis running at
+ * the same time on other voices. It must not be summed across voices, see {@link
+ * PiperJNI#getNativeMemoryUsage()}.
+ *
+ * @param modelBytes size of the model file
+ * @param loadedBytes resident memory growth while the voice was loaded
+ * @param peakSynthesisBytes largest process resident memory growth observed during a synthesis
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public record PiperMemoryUsage(long modelBytes, long loadedBytes, long peakSynthesisBytes) {
+    /**
+     * Get the estimated native memory held by the voice while idle.
+     *
+     * @return the estimated bytes
+     */
+    public long residentBytes() {
+        return Math.max(modelBytes, loadedBytes);
+    }
+
+    /**
+     * Get the estimated native memory held by the voice while synthesizing, assuming no other
+     * synthesis runs at the same time.
+     *
+     * @return the estimated bytes
+     */
+    public long totalBytes() {
+        return residentBytes() + peakSynthesisBytes;
+    }
+}
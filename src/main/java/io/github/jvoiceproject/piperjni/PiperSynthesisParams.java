@@ -0,0 +1,86 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni;
+
+/**
+ * Per request synthesis configuration, read by the native library.
+ *
+ * <p>The post-processing stage runs natively while the audio is converted to 16 bit samples, the
+ * default values leave the audio untouched.
+ *
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public class PiperSynthesisParams {
+    /** Linear gain applied to the audio. */
+    public float gain = 1f;
+
+    /**
+     * Loudness normalization applied before the gain, based on the level of the whole utterance
+     * when the audio is returned at once, or of each sentence when it is streamed.
+     */
+    public Normalization normalization = Normalization.NONE;
+
+    /**
+     * Level to normalize to as a fraction of full scale, the peak level for {@link
+     * Normalization#PEAK} or the RMS level for {@link Normalization#RMS}.
+     */
+    public float normalizationTarget = 0.95f;
+
+    /**
+     * Absolute amplitude, as a fraction of full scale, under which the leading and trailing samples
+     * of the utterance are trimmed, the silence between sentences is kept. 0 disables trimming.
+     */
+    public float trimSilenceThreshold = 0f;
+
+    /** Seconds of silence inserted between sentences. */
+    public float sentenceSilence = 0f;
+
+    /**
+     * Whether to report the phoneme timing of each segment to {@link
+     * PiperJNI.AudioCallback#onTiming}, only voice models that output their alignments report it.
+     */
+    public boolean timing = false;
+
+    /**
+     * Creates a copy of these params.
+     *
+     * @return a new instance with the same values
+     */
+    public PiperSynthesisParams copy() {
+        PiperSynthesisParams copy = new PiperSynthesisParams();
+        copy.gain = gain;
+        copy.normalization = normalization;
+        copy.normalizationTarget = normalizationTarget;
+        copy.trimSilenceThreshold = trimSilenceThreshold;
+        copy.sentenceSilence = sentenceSilence;
+        copy.timing = timing;
+        return copy;
+    }
+
+    /** Loudness normalization modes. */
+    public enum Normalization {
+        /** No normalization. */
+        NONE,
+        /** Scale the audio so its peak reaches the target. */
+        PEAK,
+        /** Scale the audio so its RMS level reaches the target. */
+        RMS
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Timing of the phonemes of the synthesized audio, as reported by the voice model.
+ *
+ * <p>Each index describes one phoneme id of the model input: the id, the phoneme it represents, the
+ * sample offset where it starts in the audio stream and its length in samples. The ids include the
+ * padding, start and end markers of each sentence, and eSpeak voices separate words with the space
+ * phoneme, which can be used to group the phonemes into words.
+ *
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public final class PiperTimingTrack {
+    /** Track without phonemes. */
+    public static final PiperTimingTrack EMPTY =
+            new PiperTimingTrack(new int[0], new int[0], new int[0], new int[0]);
+
+    private final int[] phonemeIds;
+    private final int[] phonemes;
+    private final int[] sampleOffsets;
+    private final int[] sampleCounts;
+
+    /**
+     * Creates a new timing track, the arrays must have the same length.
+     *
+     * @param phonemeIds the model phoneme ids
+     * @param phonemes the phoneme code points
+     * @param sampleOffsets the first sample of each phoneme, from the start of the audio stream
+     * @param sampleCounts the number of samples of each phoneme
+     */
+    public PiperTimingTrack(
+            int[] phonemeIds, int[] phonemes, int[] sampleOffsets, int[] sampleCounts) {
+        if (phonemes.length != phonemeIds.length
+                || sampleOffsets.length != phonemeIds.length
+                || sampleCounts.length != phonemeIds.length) {
+            throw new IllegalArgumentException("Timing track arrays must have the same length");
+        }
+        this.phonemeIds = phonemeIds;
+        this.phonemes = phonemes;
+        this.sampleOffsets = sampleOffsets;
+        this.sampleCounts = sampleCounts;
+    }
+
+    /**
+     * Joins consecutive tracks of the same audio stream.
+     *
+     * @param tracks the tracks to join
+     * @return the joined track
+     */
+    public static PiperTimingTrack concat(List<PiperTimingTrack> tracks) {
+        if (tracks.size() == 1) {
+            return tracks.get(0);
+        }
+        int size = tracks.stream().mapToInt(PiperTimingTrack::size).sum();
+        int[] phonemeIds = new int[size];
+        int[] phonemes = new int[size];
+        int[] sampleOffsets = new int[size];
+        int[] sampleCounts = new int[size];
+        int offset = 0;
+        for (PiperTimingTrack track : tracks) {
+            int length = track.size();
+            System.arraycopy(track.phonemeIds, 0, phonemeIds, offset, length);
+            System.arraycopy(track.phonemes, 0, phonemes, offset, length);
+            System.arraycopy(track.sampleOffsets, 0, sampleOffsets, offset, length);
+            System.arraycopy(track.sampleCounts, 0, sampleCounts, offset, length);
+            offset += length;
+        }
+        return new PiperTimingTrack(phonemeIds, phonemes, sampleOffsets, sampleCounts);
+    }
+
+    /**
+     * Get the number of phonemes in the track.
+     *
+     * @return the track size
+     */
+    public int size() {
+        return phonemeIds.length;
+    }
+
+    /**
+     * Get the model phoneme ids, the returned array must not be modified.
+     *
+     * @return the phoneme ids
+     */
+    public int[] getPhonemeIds() {
+        return phonemeIds;
+    }
+
+    /**
+     * Get the phoneme code points, the returned array must not be modified.
+     *
+     * @return the phoneme code points
+     */
+    public int[] getPhonemes() {
+        return phonemes;
+    }
+
+    /**
+     * Get the first sample of each phoneme, the returned array must not be modified.
+     *
+     * @return the sample offsets from the start of the audio stream
+     */
+    public int[] getSampleOffsets() {
+        return sampleOffsets;
+    }
+
+    /**
+     * Get the number of samples of each phoneme, the returned array must not be modified.
+     *
+     * @return the sample counts
+     */
+    public int[] getSampleCounts() {
+        return sampleCounts;
+    }
+
+    @Override
+    public String toString() {
+        return "PiperTimingTrack[size="
+                + size()
+                + ", phonemeIds="
+                + Arrays.toString(phonemeIds)
+                + ", sampleOffsets="
+                + Arrays.toString(sampleOffsets)
+                + "]";
+    }
+}
@@ -19,6 +19,7 @@
  */
 package io.github.jvoiceproject.piperjni;
 
+import java.io.FileNotFoundException;
 import java.nio.file.Path;
 
 /**
@@ -28,7 +29,8 @@ import java.nio.file.Path;
  */
 public class PiperVoice extends PiperJNI.JNIRef {
 
-    private final PiperJNI piper;
+    final SynthesisEngine engine;
+    private final Path modelPath;
 
     /**
      * Creates a new voice instance.
@@ -38,20 +40,27 @@ public class PiperVoice extends PiperJNI.JNIRef {
      * @param modelPath the voice model path
      * @param modelConfigPath the voice model config path
      * @param speakerId the speaker id
+     * @throws FileNotFoundException if the engine requires the model files and they don't exist
      */
     protected PiperVoice(
             PiperJNI piper,
             String espeakDataPath,
             Path modelPath,
             Path modelConfigPath,
-            long speakerId) {
-        super(
-                piper.loadVoice(
-                        espeakDataPath,
-                        modelPath.toAbsolutePath().toString(),
-                        modelConfigPath.toAbsolutePath().toString(),
-                        speakerId));
-        this.piper = piper;
+            long speakerId)
+            throws FileNotFoundException {
+        super(piper.engine.loadVoice(espeakDataPath, modelPath, modelConfigPath, speakerId));
+        this.engine = piper.engine;
+        this.modelPath = modelPath;
+    }
+
+    /**
+     * Get the voice model path.
+     *
+     * @return the voice model path
+     */
+    public Path getModelPath() {
+        return modelPath;
     }
 
     /**
@@ -61,7 +70,7 @@ public class PiperVoice extends PiperJNI.JNIRef {
      */
     public boolean getUsesESpeakPhonemes() {
         assertAvailable();
-        return piper.voiceUsesESpeakPhonemes(this.ref);
+        return engine.voiceUsesESpeakPhonemes(this.ref);
     }
 
     /**
@@ -71,13 +80,24 @@ public class PiperVoice extends PiperJNI.JNIRef {
      */
     public int getSampleRate() {
         assertAvailable();
-        return piper.voiceSampleRate(this.ref);
+        return engine.voiceSampleRate(this.ref);
+    }
+
+    /**
+     * Get the native memory accounting of this voice.
+     *
+     * @return the voice {@link PiperMemoryUsage}
+     */
+    public PiperMemoryUsage getMemoryUsage() {
+        assertAvailable();
+        return engine.voiceMemoryUsage(this.ref);
     }
 
     @Override
     public void close() {
         if (!isReleased()) {
-            piper.freeVoice(this.ref);
+            PiperJNI.loadedVoices.remove(this);
+            engine.freeVoice(this.ref);
             release();
         }
     }
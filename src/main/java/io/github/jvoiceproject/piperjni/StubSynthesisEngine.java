@@ -0,0 +1,253 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link SynthesisEngine} that produces synthetic audio without models or native code, used to test
+ * and load test the Java layers.
+ *
+ * <p>Voices render a sine tone with a frequency picked by the speaker id, lasting a fixed time per
+ * text character, so the output only depends on the text length, the speaker id, the params and the
+ * config. Audio is delivered in chunks of a fixed length, each one once the wall clock time that a
+ * real voice with the configured real time factor would need has elapsed.
+ *
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public class StubSynthesisEngine implements SynthesisEngine {
+    private final Config config;
+    private final Map<Integer, StubVoice> voices = new ConcurrentHashMap<>();
+    private final AtomicInteger nextVoiceRef = new AtomicInteger();
+
+    /** Creates a stub engine with the default config. */
+    public StubSynthesisEngine() {
+        this(new Config());
+    }
+
+    /**
+     * Creates a stub engine.
+     *
+     * @param config the engine config, read when voices are loaded
+     */
+    public StubSynthesisEngine(Config config) {
+        this.config = config;
+    }
+
+    @Override
+    public String getVersion() {
+        return "stub";
+    }
+
+    @Override
+    public Path getESpeakDataPath() {
+        return null;
+    }
+
+    @Override
+    public int loadVoice(
+            String espeakDataPath, Path modelPath, Path modelConfigPath, long speakerId) {
+        long modelBytes = 0;
+        try {
+            modelBytes =
+                    modelPath != null && Files.isRegularFile(modelPath) ? Files.size(modelPath) : 0;
+        } catch (IOException ignored) {
+            // the model files are optional
+        }
+        int ref = nextVoiceRef.getAndIncrement();
+        voices.put(
+                ref,
+                new StubVoice(
+                        config.sampleRate,
+                        config.secondsPerCharacter,
+                        config.chunkSeconds,
+                        config.realTimeFactor,
+                        config.usesESpeakPhonemes,
+                        // each speaker gets its own pitch
+                        220f * (1f + Math.max(0, speakerId) % 8 / 8f),
+                        new PiperMemoryUsage(modelBytes, 0, 0)));
+        return ref;
+    }
+
+    /**
+     * Get the number of voices loaded and not yet freed.
+     *
+     * @return the number of loaded voices
+     */
+    public int getLoadedVoices() {
+        return voices.size();
+    }
+
+    @Override
+    public void freeVoice(int voiceRef) {
+        voices.remove(voiceRef);
+    }
+
+    @Override
+    public boolean voiceUsesESpeakPhonemes(int voiceRef) {
+        return getVoice(voiceRef).usesESpeakPhonemes;
+    }
+
+    @Override
+    public int voiceSampleRate(int voiceRef) {
+        return getVoice(voiceRef).sampleRate;
+    }
+
+    @Override
+    public PiperMemoryUsage voiceMemoryUsage(int voiceRef) {
+        return getVoice(voiceRef).memoryUsage;
+    }
+
+    @Override
+    public short[] textToAudio(
+            int voiceRef,
+            String text,
+            PiperSynthesisParams params,
+            PiperJNI.AudioCallback audioCallback)
+            throws IOException {
+        StubVoice voice = getVoice(voiceRef);
+        int[] characters = text.codePoints().toArray();
+        int samplesPerCharacter =
+                Math.max(1, Math.round(voice.secondsPerCharacter * voice.sampleRate));
+        int numSamples = characters.length * samplesPerCharacter;
+        int chunkSamples = Math.max(1, Math.round(voice.chunkSeconds * voice.sampleRate));
+        float gain = params != null ? params.gain : 1f;
+        boolean timing = audioCallback != null && params != null && params.timing;
+        short[] audio = audioCallback == null ? new short[numSamples] : null;
+        long startNanos = System.nanoTime();
+        for (int chunkStart = 0; chunkStart < numSamples; chunkStart += chunkSamples) {
+            int chunkEnd = Math.min(numSamples, chunkStart + chunkSamples);
+            short[] samples = audio != null ? audio : new short[chunkEnd - chunkStart];
+            int offset = audio != null ? chunkStart : 0;
+            for (int i = chunkStart; i < chunkEnd; i++) {
+                float value =
+                        0.3f
+                                * gain
+                                * (float)
+                                        Math.sin(
+                                                2
+                                                        * Math.PI
+                                                        * voice.frequency
+                                                        * i
+                                                        / voice.sampleRate);
+                value = Math.max(-1f, Math.min(1f, value));
+                samples[offset + i - chunkStart] = (short) (value * 32767f);
+            }
+            waitUntil(startNanos, chunkEnd, voice);
+            if (audioCallback == null) {
+                continue;
+            }
+            if (timing) {
+                audioCallback.onTiming(
+                        timingTrack(characters, samplesPerCharacter, chunkStart, chunkEnd));
+            }
+            audioCallback.onAudio(samples);
+        }
+        return audio;
+    }
+
+    private static PiperTimingTrack timingTrack(
+            int[] characters, int samplesPerCharacter, int chunkStart, int chunkEnd) {
+        // the characters starting in the chunk
+        int first = (chunkStart + samplesPerCharacter - 1) / samplesPerCharacter;
+        int last =
+                Math.min(
+                        characters.length,
+                        (chunkEnd + samplesPerCharacter - 1) / samplesPerCharacter);
+        int size = Math.max(0, last - first);
+        int[] phonemeIds = new int[size];
+        int[] phonemes = new int[size];
+        int[] sampleOffsets = new int[size];
+        int[] sampleCounts = new int[size];
+        for (int i = 0; i < size; i++) {
+            phonemeIds[i] = first + i;
+            phonemes[i] = characters[first + i];
+            sampleOffsets[i] = (first + i) * samplesPerCharacter;
+            sampleCounts[i] = samplesPerCharacter;
+        }
+        return new PiperTimingTrack(phonemeIds, phonemes, sampleOffsets, sampleCounts);
+    }
+
+    private static void waitUntil(long startNanos, int synthesizedSamples, StubVoice voice)
+            throws InterruptedIOException {
+        if (voice.realTimeFactor <= 0) {
+            return;
+        }
+        long deadline =
+                startNanos
+                        + (long)
+                                ((double) synthesizedSamples
+                                        / voice.sampleRate
+                                        * voice.realTimeFactor
+                                        * 1e9);
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException("Synthesis interrupted");
+            }
+        }
+    }
+
+    private StubVoice getVoice(int voiceRef) {
+        StubVoice voice = voices.get(voiceRef);
+        if (voice == null) {
+            throw new IllegalStateException("Unknown voice " + voiceRef);
+        }
+        return voice;
+    }
+
+    /** Stub engine configuration. */
+    public static class Config {
+        /** Sample rate of the voices. */
+        public int sampleRate = 22050;
+
+        /** Seconds of audio generated for each text character. */
+        public float secondsPerCharacter = 0.06f;
+
+        /** Seconds of audio delivered on each callback call. */
+        public float chunkSeconds = 0.5f;
+
+        /**
+         * Wall clock seconds needed to synthesize a second of audio, 0 delivers the audio without
+         * delay.
+         */
+        public float realTimeFactor = 0f;
+
+        /** Whether the voices report using eSpeak phonemes. */
+        public boolean usesESpeakPhonemes = true;
+    }
+
+    private record StubVoice(
+            int sampleRate,
+            float secondsPerCharacter,
+            float chunkSeconds,
+            float realTimeFactor,
+            boolean usesESpeakPhonemes,
+            float frequency,
+            PiperMemoryUsage memoryUsage) {}
+}
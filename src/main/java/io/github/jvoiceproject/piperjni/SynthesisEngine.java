@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Backend used by {@link PiperJNI} to load voices and synthesize audio.
+ *
+ * <p>The native library is the default engine, {@link StubSynthesisEngine} produces synthetic audio
+ * so the Java layers can be tested without models or native code. Voices are identified by a
+ * reference owned by the engine.
+ *
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public interface SynthesisEngine {
+    /**
+     * Get the engine version.
+     *
+     * @return the version
+     */
+    String getVersion();
+
+    /**
+     * Get the eSpeak NG data directory used to phonemize.
+     *
+     * @return the data directory, or null if the engine does not use it
+     * @throws IOException if the data can not be extracted
+     */
+    Path getESpeakDataPath() throws IOException;
+
+    /**
+     * Loads a voice.
+     *
+     * @param espeakDataPath the eSpeak NG data directory path, or null
+     * @param modelPath model file path
+     * @param modelConfigPath model config file path
+     * @param speakerId Speaker id or -1.
+     * @return the voice reference
+     * @throws FileNotFoundException if the engine requires the model files and they don't exist
+     */
+    int loadVoice(String espeakDataPath, Path modelPath, Path modelConfigPath, long speakerId)
+            throws FileNotFoundException;
+
+    /**
+     * Frees a voice.
+     *
+     * @param voiceRef the voice reference
+     */
+    void freeVoice(int voiceRef);
+
+    /**
+     * Whether the voice uses eSpeak phonemes.
+     *
+     * @param voiceRef the voice reference
+     * @return true if the voice uses eSpeak phonemes, false otherwise
+     */
+    boolean voiceUsesESpeakPhonemes(int voiceRef);
+
+    /**
+     * Get the generated audio sample rate.
+     *
+     * @param voiceRef the voice reference
+     * @return the audio sample rate
+     */
+    int voiceSampleRate(int voiceRef);
+
+    /**
+     * Get the memory accounting of a voice.
+     *
+     * @param voiceRef the voice reference
+     * @return the voice {@link PiperMemoryUsage}
+     */
+    PiperMemoryUsage voiceMemoryUsage(int voiceRef);
+
+    /**
+     * Converts text to audio, see {@link
+     * PiperJNI#textToAudio(io.github.jvoiceproject.piperjni.PiperVoice, String,
+     * PiperSynthesisParams, PiperJNI.AudioCallback)}.
+     *
+     * @param voiceRef the voice reference
+     * @param text text to speak, not blank
+     * @param params synthesis params, or null for the defaults
+     * @param audioCallback callback for each audio segment, or null to return the whole audio
+     * @return the audio samples, or null when a callback is provided
+     * @throws IOException if generation fails
+     */
+    short[] textToAudio(
+            int voiceRef,
+            String text,
+            PiperSynthesisParams params,
+            PiperJNI.AudioCallback audioCallback)
+            throws IOException;
+}
@@ -0,0 +1,384 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Index of the voices in a directory, built from their config files without loading them.
+ *
+ * <p>Every {@code <name>.onnx.json} file with a {@code <name>.onnx} model next to it is indexed,
+ * the configs are parsed in parallel. The index is cached in a file, so later scans only parse the
+ * configs whose size or modification time changed.
+ *
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public class VoiceCatalog {
+    /** Cache file name, created in the catalog directory by default. */
+    public static final String CACHE_FILE = ".piper-voices.cache";
+
+    private static final String CONFIG_SUFFIX = ".onnx.json";
+    private static final int CACHE_MAGIC = 0x50564331; // PVC1
+
+    private final Path directory;
+    private final Path cachePath;
+    private Map<String, Voice> voices = Map.of();
+    private Map<Path, IOException> errors = Map.of();
+
+    private VoiceCatalog(Path directory, Path cachePath) {
+        this.directory = directory;
+        this.cachePath = cachePath;
+    }
+
+    /**
+     * Indexes a voice directory using the default cache file.
+     *
+     * @param directory the voice directory
+     * @return the catalog
+     * @throws IOException if the directory can not be read
+     */
+    public static VoiceCatalog scan(Path directory) throws IOException {
+        return scan(directory, directory.resolve(CACHE_FILE));
+    }
+
+    /**
+     * Indexes a voice directory.
+     *
+     * @param directory the voice directory
+     * @param cachePath the index cache file path, or null to disable the cache file
+     * @return the catalog
+     * @throws IOException if the directory can not be read
+     */
+    public static VoiceCatalog scan(Path directory, Path cachePath) throws IOException {
+        VoiceCatalog catalog = new VoiceCatalog(directory, cachePath);
+        catalog.voices = catalog.readCache();
+        catalog.refresh();
+        return catalog;
+    }
+
+    /**
+     * Scans the directory again, only the new or modified configs are parsed.
+     *
+     * @throws IOException if the directory can not be read
+     */
+    public synchronized void refresh() throws IOException {
+        List<Path> configPaths;
+        try (Stream<Path> files = Files.walk(directory)) {
+            configPaths =
+                    files.filter(path -> path.getFileName().toString().endsWith(CONFIG_SUFFIX))
+                            .filter(Files::isRegularFile)
+                            .filter(path -> Files.isRegularFile(modelPath(path)))
+                            .collect(Collectors.toList());
+        }
+        Map<String, Voice> previous = voices;
+        Map<Path, IOException> failures = new ConcurrentHashMap<>();
+        List<Voice> scanned =
+                configPaths.parallelStream()
+                        .map(path -> indexVoice(path, previous, failures))
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList());
+        Map<String, Voice> index = new LinkedHashMap<>();
+        scanned.stream()
+                .sorted((a, b) -> a.configPath().compareTo(b.configPath()))
+                .forEach(voice -> index.putIfAbsent(voice.name(), voice));
+        voices = Collections.unmodifiableMap(index);
+        errors = Collections.unmodifiableMap(new HashMap<>(failures));
+        if (!index.equals(previous)) {
+            writeCache();
+        }
+    }
+
+    /**
+     * Get the indexed voices by name, the model file name without the {@code .onnx} extension.
+     *
+     * <p>If several subdirectories contain a voice with the same name, the first path is indexed.
+     *
+     * @return the indexed voices
+     */
+    public synchronized Map<String, Voice> getVoices() {
+        return voices;
+    }
+
+    /**
+     * Get an indexed voice.
+     *
+     * @param name the voice name
+     * @return the voice, if indexed
+     */
+    public synchronized Optional<Voice> getVoice(String name) {
+        return Optional.ofNullable(voices.get(name));
+    }
+
+    /**
+     * Get the configs that could not be parsed by the last scan.
+     *
+     * @return the errors by config path
+     */
+    public synchronized Map<Path, IOException> getErrors() {
+        return errors;
+    }
+
+    private Voice indexVoice(
+            Path configPath, Map<String, Voice> previous, Map<Path, IOException> failures) {
+        try {
+            BasicFileAttributes attributes =
+                    Files.readAttributes(configPath, BasicFileAttributes.class);
+            long size = attributes.size();
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            String name = voiceName(configPath);
+            Voice cached = previous.get(name);
+            if (cached != null
+                    && cached.configPath().equals(configPath)
+                    && cached.configSize == size
+                    && cached.configLastModified == lastModified) {
+                return cached;
+            }
+            return new Voice(
+                    name,
+                    modelPath(configPath),
+                    configPath,
+                    VoiceConfig.read(configPath),
+                    size,
+                    lastModified);
+        } catch (IOException e) {
+            failures.put(configPath, e);
+            return null;
+        }
+    }
+
+    private Map<String, Voice> readCache() {
+        if (cachePath == null || !Files.isRegularFile(cachePath)) {
+            return Map.of();
+        }
+        Map<String, Voice> cached = new HashMap<>();
+        try (DataInputStream in =
+                new DataInputStream(new BufferedInputStream(Files.newInputStream(cachePath)))) {
+            if (in.readInt() != CACHE_MAGIC) {
+                return Map.of();
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Path configPath = directory.resolve(in.readUTF());
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                int sampleRate = in.readInt();
+                String quality = readNullableString(in);
+                String espeakVoice = readNullableString(in);
+                String languageCode = readNullableString(in);
+                String phonemeType = in.readUTF();
+                int numSpeakers = in.readInt();
+                int speakers = in.readInt();
+                Map<String, Integer> speakerIdMap = new LinkedHashMap<>();
+                for (int j = 0; j < speakers; j++) {
+                    speakerIdMap.put(in.readUTF(), in.readInt());
+                }
+                VoiceConfig.Inference inference =
+                        new VoiceConfig.Inference(in.readFloat(), in.readFloat(), in.readFloat());
+                String name = voiceName(configPath);
+                cached.put(
+                        name,
+                        new Voice(
+                                name,
+                                modelPath(configPath),
+                                configPath,
+                                new VoiceConfig(
+                                        sampleRate,
+                                        quality,
+                                        espeakVoice,
+                                        languageCode,
+                                        phonemeType,
+                                        numSpeakers,
+                                        speakerIdMap,
+                                        inference),
+                                size,
+                                lastModified));
+            }
+        } catch (IOException | RuntimeException e) {
+            // an unreadable cache is rebuilt from the configs
+            return Map.of();
+        }
+        return cached;
+    }
+
+    private void writeCache() {
+        if (cachePath == null) {
+            return;
+        }
+        try {
+            Path tempPath = cachePath.resolveSibling(cachePath.getFileName() + ".tmp");
+            try (DataOutputStream out =
+                    new DataOutputStream(
+                            new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+                out.writeInt(CACHE_MAGIC);
+                out.writeInt(voices.size());
+                for (Voice voice : voices.values()) {
+                    VoiceConfig config = voice.config();
+                    out.writeUTF(directory.relativize(voice.configPath()).toString());
+                    out.writeLong(voice.configSize);
+                    out.writeLong(voice.configLastModified);
+                    out.writeInt(config.sampleRate());
+                    writeNullableString(out, config.quality());
+                    writeNullableString(out, config.espeakVoice());
+                    writeNullableString(out, config.languageCode());
+                    out.writeUTF(config.phonemeType());
+                    out.writeInt(config.numSpeakers());
+                    out.writeInt(config.speakerIdMap().size());
+                    for (Map.Entry<String, Integer> speaker : config.speakerIdMap().entrySet()) {
+                        out.writeUTF(speaker.getKey());
+                        out.writeInt(speaker.getValue());
+                    }
+                    out.writeFloat(config.inference().noiseScale());
+                    out.writeFloat(config.inference().lengthScale());
+                    out.writeFloat(config.inference().noiseW());
+                }
+            }
+            Files.move(
+                    tempPath,
+                    cachePath,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ignored) {
+            // the cache is an optimization, read-only voice directories are still indexed
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String voiceName(Path configPath) {
+        String fileName = configPath.getFileName().toString();
+        return fileName.substring(0, fileName.length() - CONFIG_SUFFIX.length());
+    }
+
+    private static Path modelPath(Path configPath) {
+        String fileName = configPath.getFileName().toString();
+        return configPath.resolveSibling(fileName.substring(0, fileName.length() - 5));
+    }
+
+    /**
+     * Indexed voice.
+     *
+     * <p>Its paths can be passed to {@link PiperJNI#loadVoice(Path, Path)} to load it.
+     */
+    public static final class Voice {
+        private final String name;
+        private final Path modelPath;
+        private final Path configPath;
+        private final VoiceConfig config;
+        private final long configSize;
+        private final long configLastModified;
+
+        private Voice(
+                String name,
+                Path modelPath,
+                Path configPath,
+                VoiceConfig config,
+                long configSize,
+                long configLastModified) {
+            this.name = name;
+            this.modelPath = modelPath;
+            this.configPath = configPath;
+            this.config = config;
+            this.configSize = configSize;
+            this.configLastModified = configLastModified;
+        }
+
+        /**
+         * Get the voice name.
+         *
+         * @return the model file name without the {@code .onnx} extension
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Get the voice model path.
+         *
+         * @return the voice model path
+         */
+        public Path modelPath() {
+            return modelPath;
+        }
+
+        /**
+         * Get the voice model config path.
+         *
+         * @return the voice model config path
+         */
+        public Path configPath() {
+            return configPath;
+        }
+
+        /**
+         * Get the parsed voice config.
+         *
+         * @return the {@link VoiceConfig}
+         */
+        public VoiceConfig config() {
+            return config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Voice other
+                    && configSize == other.configSize
+                    && configLastModified == other.configLastModified
+                    && configPath.equals(other.configPath)
+                    && config.equals(other.config);
+        }
+
+        @Override
+        public int hashCode() {
+            return configPath.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "Voice[" + name + ", " + configPath + "]";
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.github.jvoiceproject.piperjni.internal.JsonParser;
+
+/**
+ * Voice model config ({@code .onnx.json}) values, read without loading the voice.
+ *
+ * @param sampleRate the audio sample rate
+ * @param quality the voice quality, or null
+ * @param espeakVoice the eSpeak NG voice used to phonemize, or null
+ * @param languageCode the language code, or null
+ * @param phonemeType the phoneme type, "espeak" or "text"
+ * @param numSpeakers the number of speakers
+ * @param speakerIdMap the speaker ids by name, empty for single speaker voices
+ * @param inference the inference defaults
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public record VoiceConfig(
+        int sampleRate,
+        String quality,
+        String espeakVoice,
+        String languageCode,
+        String phonemeType,
+        int numSpeakers,
+        Map<String, Integer> speakerIdMap,
+        Inference inference) {
+    /** Phoneme type of the voices phonemized by eSpeak NG. */
+    public static final String PHONEME_TYPE_ESPEAK = "espeak";
+
+    /** Phoneme type of the voices that use the text code points as phonemes. */
+    public static final String PHONEME_TYPE_TEXT = "text";
+
+    /** Creates a new voice config. */
+    public VoiceConfig {
+        speakerIdMap = Collections.unmodifiableMap(new LinkedHashMap<>(speakerIdMap));
+    }
+
+    /**
+     * Reads a voice model config file.
+     *
+     * @param modelConfigPath the model config file path
+     * @return the parsed config
+     * @throws IOException if the file can not be read or is not a valid voice config
+     */
+    public static VoiceConfig read(Path modelConfigPath) throws IOException {
+        try {
+            return parse(Files.readString(modelConfigPath, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IOException(
+                    "Invalid voice config " + modelConfigPath + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses a voice model config.
+     *
+     * @param json the model config content
+     * @return the parsed config
+     * @throws IOException if the content is not a valid voice config
+     */
+    public static VoiceConfig parse(String json) throws IOException {
+        Map<String, Object> root = JsonParser.parseObject(json);
+        Map<String, Object> audio = getObject(root, "audio");
+        Number sampleRate = get(audio, "sample_rate", Number.class);
+        if (sampleRate == null) {
+            throw new IOException("audio.sample_rate is required");
+        }
+        Map<String, Object> inference = getObject(root, "inference");
+        Number noiseScale = get(inference, "noise_scale", Number.class);
+        Number lengthScale = get(inference, "length_scale", Number.class);
+        Number noiseW = get(inference, "noise_w", Number.class);
+        String phonemeType = get(root, "phoneme_type", String.class);
+        Number numSpeakers = get(root, "num_speakers", Number.class);
+        Map<String, Integer> speakerIdMap = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> speaker : getObject(root, "speaker_id_map").entrySet()) {
+            if (!(speaker.getValue() instanceof Number)) {
+                throw new IOException("speaker_id_map values must be numbers");
+            }
+            speakerIdMap.put(speaker.getKey(), ((Number) speaker.getValue()).intValue());
+        }
+        return new VoiceConfig(
+                sampleRate.intValue(),
+                get(audio, "quality", String.class),
+                get(getObject(root, "espeak"), "voice", String.class),
+                get(getObject(root, "language"), "code", String.class),
+                phonemeType != null ? phonemeType : PHONEME_TYPE_ESPEAK,
+                numSpeakers != null ? numSpeakers.intValue() : 1,
+                speakerIdMap,
+                new Inference(
+                        noiseScale != null
+                                ? noiseScale.floatValue()
+                                : Inference.DEFAULT.noiseScale(),
+                        lengthScale != null
+                                ? lengthScale.floatValue()
+                                : Inference.DEFAULT.lengthScale(),
+                        noiseW != null ? noiseW.floatValue() : Inference.DEFAULT.noiseW()));
+    }
+
+    /**
+     * Whether the voice uses eSpeak phonemes.
+     *
+     * @return true if the voice uses eSpeak phonemes, false otherwise
+     */
+    public boolean usesESpeakPhonemes() {
+        return PHONEME_TYPE_ESPEAK.equals(phonemeType);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getObject(Map<String, Object> parent, String key)
+            throws IOException {
+        Map<String, Object> value = get(parent, key, Map.class);
+        return value != null ? value : Map.of();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T get(Map<String, Object> parent, String key, Class<? super T> type)
+            throws IOException {
+        Object value = parent.get(key);
+        if (value != null && !type.isInstance(value)) {
+            throw new IOException("Unexpected type for '" + key + "'");
+        }
+        return (T) value;
+    }
+
+    /**
+     * Inference defaults of the voice.
+     *
+     * @param noiseScale the generator noise
+     * @param lengthScale the phoneme length, lower is faster
+     * @param noiseW the phoneme width noise
+     */
+    public record Inference(float noiseScale, float lengthScale, float noiseW) {
+        /** Values used by piper when the config does not define them. */
+        public static final Inference DEFAULT = new Inference(0.667f, 1.0f, 0.8f);
+    }
+}
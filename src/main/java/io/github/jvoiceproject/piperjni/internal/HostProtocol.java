@@ -0,0 +1,366 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni.internal;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import io.github.jvoiceproject.piperjni.PiperSynthesisParams;
+import io.github.jvoiceproject.piperjni.PiperTimingTrack;
+
+/**
+ * Wire format shared by {@link io.github.jvoiceproject.piperjni.PiperHost} and {@link
+ * io.github.jvoiceproject.piperjni.HostSynthesisEngine}.
+ *
+ * <p>Every frame starts with an int opcode followed by its payload. Audio samples are not sent
+ * through the socket, the host writes them to a memory mapped file shared with the client and only
+ * sends the number of samples, the client acknowledges each audio frame before the host reuses the
+ * shared region.
+ *
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public final class HostProtocol {
+    /** Protocol version, sent by the host on connection. */
+    public static final int VERSION = 4;
+
+    /** Host greeting: int version, string shared memory path. */
+    public static final int HELLO = 0x01;
+
+    /** Greeting reply, sent by the client once the shared memory file is mapped. */
+    public static final int HELLO_ACK = 0x02;
+
+    /** Load voice request: string model, string config, long speaker id. */
+    public static final int LOAD_VOICE = 0x10;
+
+    /** Free voice request: int voice id. */
+    public static final int FREE_VOICE = 0x11;
+
+    /** Text to audio request: int voice id, string text, synthesis params. */
+    public static final int TEXT_TO_AUDIO = 0x12;
+
+    /** Piper version request. */
+    public static final int GET_VERSION = 0x13;
+
+    /** Successful reply, payload depends on the request. */
+    public static final int OK = 0x20;
+
+    /** Failed reply: string message. */
+    public static final int ERROR = 0x21;
+
+    /** Audio chunk available in shared memory: int number of samples. */
+    public static final int AUDIO = 0x22;
+
+    /** Audio chunk consumed by the client, the shared region can be reused. */
+    public static final int AUDIO_ACK = 0x23;
+
+    /** End of the audio stream. */
+    public static final int AUDIO_END = 0x24;
+
+    /** Timing of the next audio chunk: timing track. */
+    public static final int TIMING = 0x25;
+
+    private HostProtocol() {}
+
+    /**
+     * Writes a length prefixed UTF-8 string, not limited to 64KB as {@link
+     * DataOutputStream#writeUTF(String)}.
+     *
+     * @param out output stream
+     * @param value string to write
+     * @throws IOException if writing fails
+     */
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in input stream
+     * @return the read string
+     * @throws IOException if reading fails
+     */
+    public static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length);
+        }
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the synthesis params of a text to audio request.
+     *
+     * <p>Every field is sent, new fields must be added here and in {@link
+     * PiperSynthesisParams#copy()}.
+     *
+     * @param out output stream
+     * @param params params to write
+     * @throws IOException if writing fails
+     */
+    public static void writeParams(DataOutputStream out, PiperSynthesisParams params)
+            throws IOException {
+        out.writeFloat(params.gain);
+        out.writeInt(params.normalization.ordinal());
+        out.writeFloat(params.normalizationTarget);
+        out.writeFloat(params.trimSilenceThreshold);
+        out.writeFloat(params.sentenceSilence);
+        out.writeBoolean(params.timing);
+    }
+
+    /**
+     * Reads the synthesis params written by {@link #writeParams(DataOutputStream,
+     * PiperSynthesisParams)}.
+     *
+     * @param in input stream
+     * @return the read params
+     * @throws IOException if reading fails
+     */
+    public static PiperSynthesisParams readParams(DataInputStream in) throws IOException {
+        PiperSynthesisParams params = new PiperSynthesisParams();
+        params.gain = in.readFloat();
+        int normalization = in.readInt();
+        PiperSynthesisParams.Normalization[] values = PiperSynthesisParams.Normalization.values();
+        if (normalization < 0 || normalization >= values.length) {
+            throw new IOException("Invalid normalization " + normalization);
+        }
+        params.normalization = values[normalization];
+        params.normalizationTarget = in.readFloat();
+        params.trimSilenceThreshold = in.readFloat();
+        params.sentenceSilence = in.readFloat();
+        params.timing = in.readBoolean();
+        return params;
+    }
+
+    /**
+     * Writes a timing track.
+     *
+     * @param out output stream
+     * @param timing track to write
+     * @throws IOException if writing fails
+     */
+    public static void writeTiming(DataOutputStream out, PiperTimingTrack timing)
+            throws IOException {
+        int size = timing.size();
+        out.writeInt(size);
+        for (int[] values :
+                new int[][] {
+                    timing.getPhonemeIds(),
+                    timing.getPhonemes(),
+                    timing.getSampleOffsets(),
+                    timing.getSampleCounts()
+                }) {
+            for (int i = 0; i < size; i++) {
+                out.writeInt(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a timing track written by {@link #writeTiming(DataOutputStream, PiperTimingTrack)}.
+     *
+     * @param in input stream
+     * @return the read track
+     * @throws IOException if reading fails
+     */
+    public static PiperTimingTrack readTiming(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid timing track size " + size);
+        }
+        int[][] values = new int[4][size];
+        for (int[] array : values) {
+            for (int i = 0; i < size; i++) {
+                array[i] = in.readInt();
+            }
+        }
+        return new PiperTimingTrack(values[0], values[1], values[2], values[3]);
+    }
+
+    /**
+     * Get the directory used for the shared audio files, {@code /dev/shm} when available so the
+     * mapped pages never reach the disk.
+     *
+     * @return shared memory directory
+     */
+    public static Path sharedMemoryDir() {
+        Path shm = Path.of("/dev/shm");
+        if (Files.isDirectory(shm) && Files.isWritable(shm)) {
+            return shm;
+        }
+        return Path.of(System.getProperty("java.io.tmpdir"));
+    }
+
+    /** Memory mapped file used to transfer audio samples between processes. */
+    public static final class SharedAudio implements AutoCloseable {
+        private final Path path;
+        private final RandomAccessFile file;
+        private final boolean writable;
+        private MappedByteBuffer buffer;
+
+        private SharedAudio(Path path, boolean writable) throws IOException {
+            this.path = path;
+            this.writable = writable;
+            this.file = new RandomAccessFile(path.toFile(), writable ? "rw" : "r");
+        }
+
+        /**
+         * Creates the shared audio file, called by the host.
+         *
+         * <p>The file is only readable by its owner, the host should {@link #unlink()} it once the
+         * client has mapped it.
+         *
+         * @param path file path
+         * @param initialSamples initial capacity in samples
+         * @return shared audio instance
+         * @throws IOException if the file already exists or can not be created or mapped
+         */
+        public static SharedAudio create(Path path, int initialSamples) throws IOException {
+            if (path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                Files.createFile(
+                        path,
+                        PosixFilePermissions.asFileAttribute(
+                                PosixFilePermissions.fromString("rw-------")));
+            } else {
+                Files.createFile(path);
+            }
+            SharedAudio sharedAudio = null;
+            try {
+                sharedAudio = new SharedAudio(path, true);
+                sharedAudio.ensureCapacity(initialSamples);
+                return sharedAudio;
+            } catch (IOException e) {
+                if (sharedAudio != null) {
+                    sharedAudio.close();
+                } else {
+                    Files.deleteIfExists(path);
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Opens a shared audio file created by the host, called by the client.
+         *
+         * @param path file path
+         * @return shared audio instance
+         * @throws IOException if the file can not be opened
+         */
+        public static SharedAudio open(Path path) throws IOException {
+            return new SharedAudio(path, false);
+        }
+
+        /**
+         * Get the shared file path.
+         *
+         * @return the shared file path
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * Removes the shared file name, the mappings of both processes stay valid. Called by the
+         * host once the client has opened the file, so it does not outlive the processes on a
+         * crash.
+         *
+         * @throws IOException if the file can not be removed
+         */
+        public void unlink() throws IOException {
+            Files.deleteIfExists(path);
+        }
+
+        /**
+         * Writes samples at the start of the shared region, growing it if needed.
+         *
+         * @param samples samples to write
+         * @throws IOException if the region can not be grown
+         */
+        public void write(short[] samples) throws IOException {
+            ensureCapacity(samples.length);
+            buffer.clear();
+            buffer.asShortBuffer().put(samples);
+        }
+
+        /**
+         * Reads samples from the start of the shared region, remapping it if the host grew it.
+         *
+         * @param numSamples number of samples to read
+         * @return the read samples
+         * @throws IOException if the region can not be mapped
+         */
+        public short[] read(int numSamples) throws IOException {
+            ensureCapacity(numSamples);
+            short[] samples = new short[numSamples];
+            buffer.clear();
+            buffer.asShortBuffer().get(samples);
+            return samples;
+        }
+
+        private void ensureCapacity(int numSamples) throws IOException {
+            long requiredBytes = (long) numSamples * Short.BYTES;
+            if (buffer != null && buffer.capacity() >= requiredBytes) {
+                return;
+            }
+            long size;
+            if (writable) {
+                size = Math.max(requiredBytes, buffer == null ? 0 : (long) buffer.capacity() * 2);
+                file.setLength(size);
+            } else {
+                size = file.length();
+                if (size < requiredBytes) {
+                    throw new IOException("Shared audio region is smaller than announced");
+                }
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Shared audio region is too big");
+            }
+            buffer =
+                    file.getChannel()
+                            .map(
+                                    writable
+                                            ? FileChannel.MapMode.READ_WRITE
+                                            : FileChannel.MapMode.READ_ONLY,
+                                    0,
+                                    size);
+            buffer.order(ByteOrder.nativeOrder());
+        }
+
+        @Override
+        public void close() throws IOException {
+            buffer = null;
+            file.close();
+            if (writable) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
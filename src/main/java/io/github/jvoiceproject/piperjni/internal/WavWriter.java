@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams 16 bit mono PCM samples to a WAV file, the header sizes are written on close.
+ *
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public class WavWriter implements AutoCloseable {
+    private static final int HEADER_SIZE = 44;
+
+    private final FileChannel channel;
+    private final int sampleRate;
+    private ByteBuffer buffer = ByteBuffer.allocate(0);
+    private long numSamples;
+
+    /**
+     * Creates or truncates a WAV file.
+     *
+     * @param path the file path
+     * @param sampleRate the audio sample rate
+     * @throws IOException if the file can not be opened
+     */
+    public WavWriter(Path path, int sampleRate) throws IOException {
+        this.channel =
+                FileChannel.open(
+                        path,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE);
+        this.sampleRate = sampleRate;
+        channel.position(HEADER_SIZE);
+    }
+
+    /**
+     * Appends samples to the file.
+     *
+     * @param samples the samples to append
+     * @throws IOException if writing fails
+     */
+    public void write(short[] samples) throws IOException {
+        int size = samples.length * Short.BYTES;
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        buffer.clear();
+        buffer.asShortBuffer().put(samples);
+        buffer.limit(size);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        numSamples += samples.length;
+    }
+
+    /**
+     * Get the number of samples written.
+     *
+     * @return the number of samples written
+     */
+    public long getNumSamples() {
+        return numSamples;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (channel) {
+            long dataSize = numSamples * Short.BYTES;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(new byte[] {'R', 'I', 'F', 'F'});
+            header.putInt((int) (HEADER_SIZE - 8 + dataSize));
+            header.put(new byte[] {'W', 'A', 'V', 'E', 'f', 'm', 't', ' '});
+            header.putInt(16); // fmt chunk size
+            header.putShort((short) 1); // PCM
+            header.putShort((short) 1); // mono
+            header.putInt(sampleRate);
+            header.putInt(sampleRate * Short.BYTES); // byte rate
+            header.putShort((short) Short.BYTES); // block align
+            header.putShort((short) 16); // bits per sample
+            header.put(new byte[] {'d', 'a', 't', 'a'});
+            header.putInt((int) dataSize);
+            header.flip();
+            channel.position(0);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        }
+    }
+}
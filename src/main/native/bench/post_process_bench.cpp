@@ -0,0 +1,90 @@
+// Microbenchmark of the native post-processing stage against the previous per sample conversion loop.
+// Build with -DPIPER_JNI_BENCHMARKS=ON and run the piper-jni-post-process-bench executable.
+
+#include <algorithm>
+#include <chrono>
+#include <cmath>
+#include <cstdio>
+#include <cstdlib>
+#include <random>
+#include <vector>
+
+#include "../piper_jni_audio.hpp"
+
+// Conversion loop used before the post-processing stage existed
+static void legacyConvert(const float *samples, size_t numSamples, std::vector<int16_t> &out) {
+    for (size_t i = 0; i < numSamples; ++i) {
+        float val = samples[i];
+        val = std::max(-1.0f, std::min(1.0f, val));
+        out.push_back(static_cast<int16_t>(val * 32767.0f));
+    }
+}
+
+template <typename Fn>
+static double bestOf(int runs, Fn fn) {
+    double best = 1e300;
+    for (int run = 0; run < runs; ++run) {
+        auto start = std::chrono::steady_clock::now();
+        fn();
+        std::chrono::duration<double, std::micro> elapsed = std::chrono::steady_clock::now() - start;
+        best = std::min(best, elapsed.count());
+    }
+    return best;
+}
+
+int main(int argc, char **argv) {
+    // default to a 10 seconds sentence at 22050Hz
+    size_t numSamples = argc > 1 ? (size_t) std::strtoul(argv[1], nullptr, 10) : 220500;
+    int runs = argc > 2 ? std::atoi(argv[2]) : 200;
+
+    std::mt19937 rng(42);
+    std::normal_distribution<float> noise(0.0f, 0.3f);
+    std::vector<float> samples(numSamples);
+    for (size_t i = 0; i < numSamples; ++i) {
+        // quiet edges so trimming has work to do
+        bool edge = i < numSamples / 10 || i > numSamples - numSamples / 10;
+        samples[i] = edge ? noise(rng) * 0.001f : noise(rng);
+    }
+
+    std::vector<int16_t> out;
+    out.reserve(numSamples);
+
+    double legacy = bestOf(runs, [&] {
+        out.clear();
+        legacyConvert(samples.data(), numSamples, out);
+    });
+
+    PostProcessParams convertOnly;
+    // out of range and non finite values must be clamped as the legacy loop did
+    std::vector<float> checkSamples(samples);
+    checkSamples.insert(checkSamples.end(), {NAN, INFINITY, -INFINITY, 1.5f, -1.5f, 1.0f, -1.0f});
+    std::vector<int16_t> check;
+    legacyConvert(checkSamples.data(), checkSamples.size(), check);
+    out.clear();
+    postProcessChunk(checkSamples.data(), checkSamples.size(), convertOnly, true, true, out);
+    if (out != check) {
+        std::fprintf(stderr, "conversion output differs from the legacy loop\n");
+        return 1;
+    }
+    double convert = bestOf(runs, [&] {
+        out.clear();
+        postProcessChunk(samples.data(), numSamples, convertOnly, true, true, out);
+    });
+
+    PostProcessParams full;
+    full.gain = 0.8f;
+    full.normalization = NORMALIZATION_RMS;
+    full.normalizationTarget = 0.1f;
+    full.trimThreshold = 0.01f;
+    full.sentenceSilenceSamples = 4410;
+    double fullStage = bestOf(runs, [&] {
+        out.clear();
+        postProcessChunk(samples.data(), numSamples, full, true, true, out);
+    });
+
+    std::printf("samples: %zu, runs: %d (best time)\n", numSamples, runs);
+    std::printf("legacy clamp + push_back:        %10.1f us\n", legacy);
+    std::printf("post-process, convert only:      %10.1f us (%.2fx)\n", convert, legacy / convert);
+    std::printf("post-process, gain+rms+trim+gap: %10.1f us (%.2fx)\n", fullStage, legacy / fullStage);
+    return 0;
+}
@@ -2,9 +2,12 @@
 #include "condition_variable"
 #include "atomic"
 #include "thread"
+#include "deque"
 #include "io_github_jvoiceproject_piperjni_PiperJNI.h"
 #include "piper.h"
 #include "piper_impl.hpp"
+#include "piper_jni_audio.hpp"
+#include "piper_jni_memory.hpp"
 
 // Custom deleter for piper_synthesizer to use with smart pointers
 struct PiperDeleter {
@@ -17,7 +20,10 @@ struct PiperDeleter {
 
 using PiperVoicePtr = std::shared_ptr<piper_synthesizer>;
 
+using VoiceMemoryPtr = std::shared_ptr<VoiceMemoryUsage>;
+
 std::map<int, PiperVoicePtr> voiceMap;
+std::map<int, VoiceMemoryPtr> voiceMemoryMap;
 std::mutex voiceMapMutex;
 
 // Exception helper
@@ -72,61 +78,144 @@ int getVoiceId() {
     return nextVoiceId.fetch_add(1);
 }
 
+// Copy int16 samples into a new Java short array
+jshortArray newJavaShortArray(JNIEnv *env, const std::vector<int16_t> &samples) {
+    static_assert(sizeof(jshort) == sizeof(int16_t), "jshort must be 16 bits");
+    jshortArray jAudioBuffer = env->NewShortArray(samples.size());
+    env->SetShortArrayRegion(jAudioBuffer, 0, samples.size(), reinterpret_cast<const jshort *>(samples.data()));
+    return jAudioBuffer;
+}
+
+// Copy ints into a new Java int array
+jintArray newJavaIntArray(JNIEnv *env, const std::vector<int> &values) {
+    static_assert(sizeof(jint) == sizeof(int), "jint must be 32 bits");
+    jintArray jValues = env->NewIntArray(values.size());
+    env->SetIntArrayRegion(jValues, 0, values.size(), reinterpret_cast<const jint *>(values.data()));
+    return jValues;
+}
+
+// Create a PiperTimingTrack instance, phonemesById resolves the code point of each phoneme id
+jobject newJavaTimingTrack(JNIEnv *env, jclass timingClass, jmethodID timingConstructor,
+                           const PhonemeTimings &timings, const std::map<int, char32_t> &phonemesById) {
+    std::vector<int> phonemes;
+    phonemes.reserve(timings.phonemeIds.size());
+    for (int id : timings.phonemeIds) {
+        auto phoneme = phonemesById.find(id);
+        phonemes.push_back(phoneme != phonemesById.end() ? (int) phoneme->second : 0);
+    }
+    jintArray jPhonemeIds = newJavaIntArray(env, timings.phonemeIds);
+    jintArray jPhonemes = newJavaIntArray(env, phonemes);
+    jintArray jSampleOffsets = newJavaIntArray(env, timings.sampleOffsets);
+    jintArray jSampleCounts = newJavaIntArray(env, timings.sampleCounts);
+    jobject jTiming = env->NewObject(timingClass, timingConstructor, jPhonemeIds, jPhonemes, jSampleOffsets, jSampleCounts);
+    env->DeleteLocalRef(jPhonemeIds);
+    env->DeleteLocalRef(jPhonemes);
+    env->DeleteLocalRef(jSampleOffsets);
+    env->DeleteLocalRef(jSampleCounts);
+    return jTiming;
+}
+
+// Read the post-processing configuration from a PiperSynthesisParams instance
+PostProcessParams readPostProcessParams(JNIEnv *env, jobject jParams, int sampleRate) {
+    PostProcessParams params;
+    if (jParams == nullptr) {
+        return params;
+    }
+    jclass paramsClass = env->GetObjectClass(jParams);
+    params.gain = env->GetFloatField(jParams, env->GetFieldID(paramsClass, "gain", "F"));
+    params.normalizationTarget = env->GetFloatField(jParams, env->GetFieldID(paramsClass, "normalizationTarget", "F"));
+    params.trimThreshold = env->GetFloatField(jParams, env->GetFieldID(paramsClass, "trimSilenceThreshold", "F"));
+    float sentenceSilence = env->GetFloatField(jParams, env->GetFieldID(paramsClass, "sentenceSilence", "F"));
+    params.sentenceSilenceSamples = sentenceSilence > 0.0f ? (size_t) (sentenceSilence * (float) sampleRate) : 0;
+    jobject jNormalization = env->GetObjectField(jParams,
+        env->GetFieldID(paramsClass, "normalization", "Lio/github/jvoiceproject/piperjni/PiperSynthesisParams$Normalization;"));
+    if (jNormalization != nullptr) {
+        jclass enumClass = env->GetObjectClass(jNormalization);
+        params.normalization = env->CallIntMethod(jNormalization, env->GetMethodID(enumClass, "ordinal", "()I"));
+        env->DeleteLocalRef(jNormalization);
+    }
+    return params;
+}
+
+// Read whether phoneme timings were requested from a PiperSynthesisParams instance
+bool readTimingEnabled(JNIEnv *env, jobject jParams) {
+    if (jParams == nullptr) {
+        return false;
+    }
+    jclass paramsClass = env->GetObjectClass(jParams);
+    return env->GetBooleanField(jParams, env->GetFieldID(paramsClass, "timing", "Z"));
+}
+
+// Segment produced by the synthesis loop, waiting to be delivered to the Java callback
+struct DeliveredSegment {
+    std::vector<int16_t> samples;
+    bool hasTiming = false;
+    PhonemeTimings timings;
+};
+
+// State shared by the synthesis loop and the callback thread
+struct DeliveryState {
+    std::mutex mutex;
+    std::condition_variable ready;
+    std::deque<DeliveredSegment> segments;
+    bool finished = false;
+    // set once the callback thread stopped delivering, error holds the callback exception if any
+    bool failed = false;
+    jthrowable error = nullptr;
+};
+
 // Background consumer thread callback function
-void jCallbackOutputProc(JavaVM *jvm, const jobject &jAudioCallback, std::vector<int16_t> &sharedAudioBuffer, std::mutex &mutAudio,
-                   std::condition_variable &cvAudio, bool &audioReady, const bool &audioFinished) {
+void jCallbackOutputProc(JavaVM *jvm, jobject jAudioCallback, jmethodID cbMethodId, jmethodID timingMethodId,
+                         jclass timingClass, jmethodID timingConstructor,
+                         const std::map<int, char32_t> &phonemesById, DeliveryState &state) {
     JNIEnv *env;
-    bool jvmAttached = false;
-
     // Attach this new background thread to the JVM
-    if (jvm->AttachCurrentThread(reinterpret_cast<void **>(&env), nullptr) == JNI_OK) {
-        jvmAttached = true;
-    } else {
-        NewJavaException(env, "java/lang/RuntimeException", "Failed to attach callback thread to JVM");
+    if (jvm->AttachCurrentThread(reinterpret_cast<void **>(&env), nullptr) != JNI_OK) {
+        std::lock_guard<std::mutex> lock(state.mutex);
+        state.failed = true;
         return;
     }
-
-    std::vector<int16_t> internalAudioBuffer;
+    DeliveredSegment segment;
     // Consumer Loop
     while (true) {
         {
-            // Wait for the Producer to signal that audio data is ready
-            std::unique_lock lockAudio{mutAudio};
-            cvAudio.wait(lockAudio, [&]{ return audioReady || audioFinished; });
-
-            if (sharedAudioBuffer.empty() && audioFinished) {
+            // Wait for the Producer to signal that a segment is ready
+            std::unique_lock<std::mutex> lock(state.mutex);
+            state.ready.wait(lock, [&] { return !state.segments.empty() || state.finished; });
+            if (state.segments.empty()) {
                 break; // Exit when completely done
             }
-
-            // Move audio data from shared buffer to internal buffer to quickly release the lock
-            internalAudioBuffer.insert(internalAudioBuffer.end(), sharedAudioBuffer.begin(), sharedAudioBuffer.end());
-            sharedAudioBuffer.clear();
-            if (!audioFinished) {
-                audioReady = false;
-            }
+            segment = std::move(state.segments.front());
+            state.segments.pop_front();
         }
-
-        // Send audio data to the JVM
-        if (jvmAttached && env->ExceptionCheck() != JNI_TRUE) {
-            jclass cbClass = env->GetObjectClass(jAudioCallback);
-            jmethodID cbMethodId = env->GetMethodID(cbClass, "onAudio", "([S)V");
-            jshortArray jAudioBuffer = env->NewShortArray(internalAudioBuffer.size());
-            jshort *jSamples = env->GetShortArrayElements(jAudioBuffer, nullptr);
-
-            for (size_t index = 0; index < internalAudioBuffer.size(); ++index) {
-                jSamples[index]= (jshort) internalAudioBuffer[index];
+        // Send the segment to the JVM
+        if (segment.hasTiming) {
+            jobject jTiming = newJavaTimingTrack(env, timingClass, timingConstructor, segment.timings, phonemesById);
+            env->CallVoidMethod(jAudioCallback, timingMethodId, jTiming);
+            env->DeleteLocalRef(jTiming);
+            if (env->ExceptionCheck()) {
+                break;
             }
-
-            env->ReleaseShortArrayElements(jAudioBuffer, jSamples, 0);
-            env->CallVoidMethod(jAudioCallback, cbMethodId, jAudioBuffer);
-            env->DeleteLocalRef(jAudioBuffer);
         }
-        internalAudioBuffer.clear();
+        jshortArray jAudioBuffer = newJavaShortArray(env, segment.samples);
+        env->CallVoidMethod(jAudioCallback, cbMethodId, jAudioBuffer);
+        env->DeleteLocalRef(jAudioBuffer);
+        if (env->ExceptionCheck()) {
+            break;
+        }
     }
-    if (jvmAttached) {
-        // Detach this background thread from the JVM
-        jvm->DetachCurrentThread();
+    jthrowable error = env->ExceptionOccurred();
+    if (error) {
+        // the exception is rethrown by the calling thread, which stops synthesizing
+        env->ExceptionClear();
+        std::lock_guard<std::mutex> lock(state.mutex);
+        state.failed = true;
+        state.error = (jthrowable) env->NewGlobalRef(error);
+        state.segments.clear();
+        env->DeleteLocalRef(error);
     }
+    // Detach this background thread from the JVM
+    jvm->DetachCurrentThread();
 }
 
 // JNI Implementations
@@ -137,12 +226,17 @@ JNIEXPORT jint JNICALL Java_io_github_jvoiceproject_piperjni_PiperJNI_loadVoice(
         JNIString cModelPath(env, modelPath);
         JNIString cModelConfigPath(env, modelConfigPath);
 
+        VoiceMemoryPtr memory = std::make_shared<VoiceMemoryUsage>();
+        memory->modelBytes = fileSizeBytes(cModelPath);
+        int64_t residentBefore = residentMemoryBytes();
+
         PiperVoicePtr voice(piper_create(cModelPath, cModelConfigPath, cEspeakDataPath), PiperDeleter());
 
         if (!voice) {
              NewJavaException(env, "java/lang/RuntimeException", "Failed to load voice");
              return -1;
         }
+        memory->loadedBytes = std::max<int64_t>(0, residentMemoryBytes() - residentBefore);
 
         // Set speaker id if provided
         if (jSpeakerId > -1) {
@@ -152,6 +246,7 @@ JNIEXPORT jint JNICALL Java_io_github_jvoiceproject_piperjni_PiperJNI_loadVoice(
         int ref = getVoiceId();
         std::lock_guard<std::mutex> lock(voiceMapMutex);
         voiceMap.insert({ref, voice});
+        voiceMemoryMap.insert({ref, memory});
         return ref;
     } catch (const std::exception&) {
         swallow_cpp_exception_and_throw_java(env);
@@ -183,108 +278,166 @@ JNIEXPORT jint JNICALL Java_io_github_jvoiceproject_piperjni_PiperJNI_voiceSampl
 JNIEXPORT void JNICALL Java_io_github_jvoiceproject_piperjni_PiperJNI_freeVoice(JNIEnv */*env*/, jobject /*thisObject*/, jint voiceRef) {
     std::lock_guard<std::mutex> lock(voiceMapMutex);
     voiceMap.erase(voiceRef);
+    voiceMemoryMap.erase(voiceRef);
     // PiperDeleter will automatically call piper_free when the shared_ptr is destroyed
     // and no other references exist (e.g. from running textToAudio calls).
 }
 
-JNIEXPORT jshortArray JNICALL Java_io_github_jvoiceproject_piperjni_PiperJNI_textToAudio(JNIEnv *env, jobject /*thisObject*/, jint voiceRef, jstring jText, jobject jAudioCallback) {
+JNIEXPORT jshortArray JNICALL Java_io_github_jvoiceproject_piperjni_PiperJNI_textToAudio(JNIEnv *env, jobject /*thisObject*/, jint voiceRef, jstring jText, jobject jParams, jobject jAudioCallback) {
     try {
         PiperVoicePtr voice;
+        VoiceMemoryPtr memory;
         {
             std::lock_guard<std::mutex> lock(voiceMapMutex);
             voice = voiceMap.at(voiceRef);
+            memory = voiceMemoryMap.at(voiceRef);
         }
 
         JNIString cText(env, jText);
+        PostProcessParams postProcessParams = readPostProcessParams(env, jParams, voice->sample_rate);
+        // timings are only delivered through the callback
+        bool timing = jAudioCallback && readTimingEnabled(env, jParams);
+        jmethodID cbMethodId = nullptr;
+        jmethodID timingMethodId = nullptr;
+        jclass timingClass = nullptr;
+        jmethodID timingConstructor = nullptr;
+        if (jAudioCallback) {
+            jclass cbClass = env->GetObjectClass(jAudioCallback);
+            cbMethodId = env->GetMethodID(cbClass, "onAudio", "([S)V");
+            if (timing) {
+                timingMethodId = env->GetMethodID(cbClass, "onTiming", "(Lio/github/jvoiceproject/piperjni/PiperTimingTrack;)V");
+                timingClass = env->FindClass("io/github/jvoiceproject/piperjni/PiperTimingTrack");
+                if (timingClass) {
+                    timingConstructor = env->GetMethodID(timingClass, "<init>", "([I[I[I[I)V");
+                }
+            }
+        }
+        if (env->ExceptionCheck()) {
+            return nullptr;
+        }
+        std::map<int, char32_t> phonemesById;
+        if (timing) {
+            for (const auto &entry : voice->phoneme_id_map) {
+                for (auto id : entry.second) {
+                    phonemesById.emplace((int) id, entry.first);
+                }
+            }
+        }
         piper_synthesize_options options = piper_default_synthesize_options(voice.get());
         if (piper_synthesize_start(voice.get(), cText.get(), &options) != PIPER_OK) {
              NewJavaException(env, "java/lang/RuntimeException", "Failed to start synthesis");
              return nullptr;
         }
 
-        piper_audio_chunk chunk;
-        int ret;
-
-        if (jAudioCallback) {
-            // Producer-Consumer Mode
-            JavaVM *jvm;
-            if (env->GetJavaVM(&jvm) != JNI_OK) {
-                NewJavaException(env, "java/lang/RuntimeException", "Failed getting reference to JVM");
-                return nullptr;
-            }
-
-            // thread vars
-            std::vector<int16_t> sharedAudioBuffer;
-            std::mutex mutAudio;
-            std::condition_variable cvAudio;
-            bool audioReady = false;
-            bool audioFinished = false;
-
-            // Spawn the consumer thread
-            std::thread jCallbackOutputThread(jCallbackOutputProc, jvm, std::ref(jAudioCallback), std::ref(sharedAudioBuffer),
-                                 std::ref(mutAudio), std::ref(cvAudio), std::ref(audioReady), std::ref(audioFinished));
-
-            // The Producer Loop
-            while ((ret = piper_synthesize_next(voice.get(), &chunk)) != PIPER_DONE) {
-                 if (ret != PIPER_OK) break;
-
-                 if (chunk.num_samples > 0) {
-                      std::vector<int16_t> chunkSamples;
-                      chunkSamples.reserve(chunk.num_samples);
-
-                      // Convert float samples to int16
-                      for (size_t i = 0; i < chunk.num_samples; ++i) {
-                          float val = chunk.samples[i];
-                          val = std::max(-1.0f, std::min(1.0f, val));
-                          chunkSamples.push_back(static_cast<int16_t>(val * 32767.0f));
-                      }
-
-                      // Signal to the consumer that audio data is ready
-                      {
-                          std::unique_lock<std::mutex> lockAudio(mutAudio);
-                          sharedAudioBuffer.insert(sharedAudioBuffer.end(), chunkSamples.begin(), chunkSamples.end());
-                          audioReady = true;
-                      }
-                      cvAudio.notify_one(); // Wake up the consumer thread
-                 }
+        int64_t residentStart = residentMemoryBytes();
+        if (!jAudioCallback) {
+            // Blocking Mode/Synchronous Batch Mode: nothing is delivered until the end, so there is
+            // nothing to overlap with inference. The whole utterance is post-processed at once.
+            UtterancePostProcessor utterance(postProcessParams);
+            piper_audio_chunk chunk;
+            while (piper_synthesize_next(voice.get(), &chunk) == PIPER_OK) {
+                memory->recordSynthesis(residentMemoryBytes() - residentStart);
+                if (chunk.num_samples == 0) continue;
+                utterance.add(chunk.samples, chunk.num_samples, chunk.is_last);
             }
+            return newJavaShortArray(env, utterance.finish());
+        }
 
-            // Signal the Consumer that we are completely done
+        // Producer-Consumer Mode: inference and post-processing run on the calling thread while a
+        // thread attached to the JVM delivers the previous segments to the callback
+        JavaVM *jvm;
+        if (env->GetJavaVM(&jvm) != JNI_OK) {
+            NewJavaException(env, "java/lang/RuntimeException", "Failed getting reference to JVM");
+            return nullptr;
+        }
+        // local references are only valid on the thread that created them
+        jobject jCallback = env->NewGlobalRef(jAudioCallback);
+        jclass jTimingClass = timingClass ? (jclass) env->NewGlobalRef(timingClass) : nullptr;
+        DeliveryState state;
+        std::thread jCallbackOutputThread(jCallbackOutputProc, jvm, jCallback, cbMethodId, timingMethodId, jTimingClass,
+                                          timingConstructor, std::cref(phonemesById), std::ref(state));
+        auto finishDelivery = [&] {
             {
-                std::unique_lock<std::mutex> lockAudio(mutAudio);
-                audioFinished = true;
-                audioReady = true;
+                std::lock_guard<std::mutex> lock(state.mutex);
+                state.finished = true;
             }
-            cvAudio.notify_one(); // Wake up the consumer thread
-
-            // Wait for the background thread to finish pushing the last chunk to Java
+            state.ready.notify_one();
             jCallbackOutputThread.join();
-
-            return nullptr;
-        } else {
-            // Blocking Mode/Synchronous Batch Mode
-            std::vector<int16_t> fullAudioBuffer;
+            env->DeleteGlobalRef(jCallback);
+            if (jTimingClass) {
+                env->DeleteGlobalRef(jTimingClass);
+            }
+        };
+
+        // The Producer Loop
+        try {
+            piper_audio_chunk chunk;
+            int ret;
+            bool firstChunk = true;
+            int64_t streamSamples = 0;
             while ((ret = piper_synthesize_next(voice.get(), &chunk)) != PIPER_DONE) {
-                 if (ret != PIPER_OK) break;
-                 if (chunk.num_samples > 0) {
-                      // Convert float samples to int16
-                      for (size_t i = 0; i < chunk.num_samples; ++i) {
-                          float val = chunk.samples[i];
-                          val = std::max(-1.0f, std::min(1.0f, val));
-                          fullAudioBuffer.push_back(static_cast<int16_t>(val * 32767.0f));
-                      }
-                 }
+                if (ret != PIPER_OK) break;
+                memory->recordSynthesis(residentMemoryBytes() - residentStart);
+                if (chunk.num_samples == 0) continue;
+                DeliveredSegment segment;
+                TrimmedRange range = postProcessChunk(chunk.samples, chunk.num_samples, postProcessParams, firstChunk,
+                                                      chunk.is_last, segment.samples);
+                if (segment.samples.empty()) {
+                    continue;
+                }
+                size_t silence = firstChunk ? 0 : postProcessParams.sentenceSilenceSamples;
+                firstChunk = false;
+                if (timing && chunk.alignments && chunk.num_alignments == chunk.num_phoneme_ids) {
+                    alignPhonemeTimings(chunk.phoneme_ids, chunk.alignments, chunk.num_alignments, range.start,
+                                        range.length, streamSamples + (int64_t) silence, segment.timings);
+                    segment.hasTiming = true;
+                }
+                streamSamples += (int64_t) segment.samples.size();
+                {
+                    std::lock_guard<std::mutex> lock(state.mutex);
+                    if (state.failed) {
+                        // the callback failed, stop synthesizing
+                        break;
+                    }
+                    state.segments.push_back(std::move(segment));
+                }
+                state.ready.notify_one();
             }
-
-            // Return the full audio buffer
-            jshortArray jAudioBuffer = env->NewShortArray(fullAudioBuffer.size());
-            jshort *jSamples = env->GetShortArrayElements(jAudioBuffer, nullptr);
-            for (size_t index = 0; index < fullAudioBuffer.size(); ++index) {
-                jSamples[index] = (jshort) fullAudioBuffer[index];
+        } catch (...) {
+            finishDelivery();
+            if (state.error) {
+                env->DeleteGlobalRef(state.error);
             }
-            env->ReleaseShortArrayElements(jAudioBuffer, jSamples, 0);
-            return jAudioBuffer;
+            throw;
+        }
+        // Wait for the background thread to finish pushing the last segment to Java
+        finishDelivery();
+
+        if (state.error) {
+            // rethrow the callback exception on the calling thread
+            env->Throw(state.error);
+            env->DeleteGlobalRef(state.error);
+        } else if (state.failed) {
+            NewJavaException(env, "java/lang/RuntimeException", "Failed to attach callback thread to JVM");
+        }
+        return nullptr;
+    } catch (const std::exception&) {
+        swallow_cpp_exception_and_throw_java(env);
+        return nullptr;
+    }
+}
+
+JNIEXPORT jlongArray JNICALL Java_io_github_jvoiceproject_piperjni_PiperJNI_voiceMemoryUsage(JNIEnv *env, jclass /*thisClass*/, jint voiceRef) {
+    try {
+        VoiceMemoryPtr memory;
+        {
+            std::lock_guard<std::mutex> lock(voiceMapMutex);
+            memory = voiceMemoryMap.at(voiceRef);
         }
+        jlong usage[3] = {memory->modelBytes, memory->loadedBytes, memory->peakSynthesisBytes.load()};
+        jlongArray jUsage = env->NewLongArray(3);
+        env->SetLongArrayRegion(jUsage, 0, 3, usage);
+        return jUsage;
     } catch (const std::exception&) {
         swallow_cpp_exception_and_throw_java(env);
         return nullptr;
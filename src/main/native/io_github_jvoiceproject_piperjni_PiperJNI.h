@@ -42,10 +42,10 @@ JNIEXPORT jint JNICALL Java_io_github_jvoiceproject_piperjni_PiperJNI_voiceSampl
 /*
  * Class:     io_github_jvoiceproject_piperjni_PiperJNI
  * Method:    textToAudio
- * Signature: (ILjava/lang/String;Lio/github/jvoiceproject/piperjni/PiperJNI/AudioCallback;)[S
+ * Signature: (ILjava/lang/String;Lio/github/jvoiceproject/piperjni/PiperSynthesisParams;Lio/github/jvoiceproject/piperjni/PiperJNI/AudioCallback;)[S
  */
 JNIEXPORT jshortArray JNICALL Java_io_github_jvoiceproject_piperjni_PiperJNI_textToAudio
-  (JNIEnv *, jobject, jint, jstring, jobject);
+  (JNIEnv *, jobject, jint, jstring, jobject, jobject);
 
 /*
  * Class:     io_github_jvoiceproject_piperjni_PiperJNI
@@ -55,6 +55,14 @@ JNIEXPORT jshortArray JNICALL Java_io_github_jvoiceproject_piperjni_PiperJNI_tex
 JNIEXPORT jstring JNICALL Java_io_github_jvoiceproject_piperjni_PiperJNI_getVersion
   (JNIEnv *, jobject);
 
+/*
+ * Class:     io_github_jvoiceproject_piperjni_PiperJNI
+ * Method:    voiceMemoryUsage
+ * Signature: (I)[J
+ */
+JNIEXPORT jlongArray JNICALL Java_io_github_jvoiceproject_piperjni_PiperJNI_voiceMemoryUsage
+  (JNIEnv *, jclass, jint);
+
 #ifdef __cplusplus
 }
 #endif
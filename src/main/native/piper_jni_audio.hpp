@@ -0,0 +1,240 @@
+#ifndef PIPER_JNI_AUDIO_HPP_
+#define PIPER_JNI_AUDIO_HPP_
+
+#include <cmath>
+#include <cstddef>
+#include <cstdint>
+#include <vector>
+
+// Post-processing applied to the synthesized audio while it is converted to int16.
+// Silence is trimmed at the start and end of the whole utterance, not around every sentence.
+// The blocking path normalizes the whole utterance at once, the streaming path each sentence
+// as the following ones are not synthesized yet.
+// The loops below use plain arrays, fixed size accumulators and branchless clamps so the
+// compiler can vectorize them. GCC only vectorizes the clamps with -O3 -fno-trapping-math,
+// which CMakeLists.txt sets on the JNI source; the results are bit-identical either way.
+
+enum PostProcessNormalization {
+    NORMALIZATION_NONE = 0,
+    NORMALIZATION_PEAK = 1,
+    NORMALIZATION_RMS = 2,
+};
+
+struct PostProcessParams {
+    // Linear gain
+    float gain = 1.0f;
+    // One of PostProcessNormalization
+    int normalization = NORMALIZATION_NONE;
+    // Peak or RMS level to normalize to, as a fraction of full scale
+    float normalizationTarget = 0.95f;
+    // Absolute amplitude under which the utterance leading and trailing samples are trimmed, 0 disables trimming
+    float trimThreshold = 0.0f;
+    // Silence inserted before every chunk but the first one
+    size_t sentenceSilenceSamples = 0;
+};
+
+// Number of independent accumulators used by the reductions, wide enough for 256-bit registers.
+constexpr size_t POST_PROCESS_LANES = 8;
+
+// Returns the first index whose absolute amplitude reaches the threshold, or num_samples.
+inline size_t findFirstAudible(const float *samples, size_t numSamples, float threshold) {
+    for (size_t i = 0; i < numSamples; ++i) {
+        if (std::fabs(samples[i]) >= threshold) {
+            return i;
+        }
+    }
+    return numSamples;
+}
+
+// Returns one past the last index whose absolute amplitude reaches the threshold, or 0.
+inline size_t findLastAudible(const float *samples, size_t numSamples, float threshold) {
+    for (size_t i = numSamples; i > 0; --i) {
+        if (std::fabs(samples[i - 1]) >= threshold) {
+            return i;
+        }
+    }
+    return 0;
+}
+
+// Computes the peak amplitude and the sum of squares in a single pass.
+inline void measureLevels(const float *samples, size_t numSamples, float &peak, double &sumSquares) {
+    float peakLanes[POST_PROCESS_LANES] = {};
+    float squareLanes[POST_PROCESS_LANES] = {};
+    size_t i = 0;
+    for (; i + POST_PROCESS_LANES <= numSamples; i += POST_PROCESS_LANES) {
+        for (size_t lane = 0; lane < POST_PROCESS_LANES; ++lane) {
+            float value = samples[i + lane];
+            float magnitude = value < 0.0f ? -value : value;
+            peakLanes[lane] = magnitude > peakLanes[lane] ? magnitude : peakLanes[lane];
+            squareLanes[lane] += value * value;
+        }
+    }
+    peak = 0.0f;
+    sumSquares = 0.0;
+    for (size_t lane = 0; lane < POST_PROCESS_LANES; ++lane) {
+        peak = peakLanes[lane] > peak ? peakLanes[lane] : peak;
+        sumSquares += squareLanes[lane];
+    }
+    for (; i < numSamples; ++i) {
+        float magnitude = std::fabs(samples[i]);
+        peak = magnitude > peak ? magnitude : peak;
+        sumSquares += (double) samples[i] * samples[i];
+    }
+}
+
+// Accumulated levels of the audio to normalize.
+struct AudioLevels {
+    float peak = 0.0f;
+    double sumSquares = 0.0;
+    size_t numSamples = 0;
+
+    void add(const float *samples, size_t length) {
+        float chunkPeak;
+        double chunkSumSquares;
+        measureLevels(samples, length, chunkPeak, chunkSumSquares);
+        peak = chunkPeak > peak ? chunkPeak : peak;
+        sumSquares += chunkSumSquares;
+        numSamples += length;
+    }
+};
+
+// Returns the scale that applies the gain and the normalization to audio with the given levels.
+inline float postProcessScale(const PostProcessParams &params, const AudioLevels &levels) {
+    float scale = params.gain;
+    if (params.normalization != NORMALIZATION_NONE && levels.numSamples > 0) {
+        float level = params.normalization == NORMALIZATION_PEAK
+                ? levels.peak
+                : static_cast<float>(std::sqrt(levels.sumSquares / (double) levels.numSamples));
+        if (level > 0.0f) {
+            scale *= params.normalizationTarget / level;
+        }
+    }
+    return scale;
+}
+
+// Scales, clamps and converts float samples to int16.
+// With a scale of 1 the output is identical to std::max(-1.0f, std::min(1.0f, value)) * 32767
+// truncated, including NaN which is clamped to full scale instead of reaching the conversion.
+inline void convertToInt16(const float *samples, size_t numSamples, float scale, int16_t *out) {
+    for (size_t i = 0; i < numSamples; ++i) {
+        float value = samples[i] * scale;
+        value = value < 1.0f ? value : 1.0f;
+        value = -1.0f < value ? value : -1.0f;
+        out[i] = static_cast<int16_t>(value * 32767.0f);
+    }
+}
+
+// Range of a chunk kept by silence trimming.
+struct TrimmedRange {
+    size_t start;
+    size_t length;
+};
+
+// Trims the leading silence of the first chunk of the utterance and the trailing silence of the last one.
+// A first chunk without audible samples is dropped, so the next one is trimmed as the first.
+inline TrimmedRange trimSilence(const float *samples, size_t numSamples, float threshold, bool firstChunk,
+                                bool lastChunk) {
+    size_t start = 0;
+    size_t end = numSamples;
+    if (threshold > 0.0f) {
+        if (firstChunk) {
+            start = findFirstAudible(samples, numSamples, threshold);
+        }
+        if (lastChunk) {
+            end = findLastAudible(samples, numSamples, threshold);
+        }
+        end = end < start ? start : end;
+    }
+    return {start, end - start};
+}
+
+// Runs the post-processing stage over a chunk on its own and appends the result to out.
+// firstChunk is true until some audio has been appended and lastChunk on the last chunk of the
+// utterance. Returns the range of the chunk that was kept, so callers can align timings.
+inline TrimmedRange postProcessChunk(const float *samples, size_t numSamples, const PostProcessParams &params,
+                                     bool firstChunk, bool lastChunk, std::vector<int16_t> &out) {
+    TrimmedRange range = trimSilence(samples, numSamples, params.trimThreshold, firstChunk, lastChunk);
+    if (range.length == 0) {
+        return range;
+    }
+    AudioLevels levels;
+    if (params.normalization != NORMALIZATION_NONE) {
+        levels.add(samples + range.start, range.length);
+    }
+    size_t silence = firstChunk ? 0 : params.sentenceSilenceSamples;
+    size_t offset = out.size();
+    // resize once instead of pushing each sample, silence is zero initialized
+    out.resize(offset + silence + range.length);
+    convertToInt16(samples + range.start, range.length, postProcessScale(params, levels),
+                   out.data() + offset + silence);
+    return range;
+}
+
+// Utterance post-processing for the blocking path, the normalization uses the levels of the whole
+// utterance so the chunks are kept as float until finish is called.
+class UtterancePostProcessor {
+public:
+    explicit UtterancePostProcessor(const PostProcessParams &params) : params(params) {}
+
+    void add(const float *samples, size_t numSamples, bool lastChunk) {
+        bool firstChunk = audio.empty() && pending.empty();
+        if (params.normalization == NORMALIZATION_NONE) {
+            // the scale is already known, convert without keeping a float copy
+            postProcessChunk(samples, numSamples, params, firstChunk, lastChunk, audio);
+            return;
+        }
+        TrimmedRange range = trimSilence(samples, numSamples, params.trimThreshold, firstChunk, lastChunk);
+        if (range.length == 0) {
+            return;
+        }
+        // inserted silence does not count towards the levels
+        levels.add(samples + range.start, range.length);
+        pending.resize(pending.size() + (firstChunk ? 0 : params.sentenceSilenceSamples), 0.0f);
+        pending.insert(pending.end(), samples + range.start, samples + range.start + range.length);
+    }
+
+    std::vector<int16_t> &finish() {
+        if (!pending.empty()) {
+            audio.resize(pending.size());
+            convertToInt16(pending.data(), pending.size(), postProcessScale(params, levels), audio.data());
+            pending.clear();
+        }
+        return audio;
+    }
+
+private:
+    const PostProcessParams &params;
+    AudioLevels levels;
+    std::vector<float> pending;
+    std::vector<int16_t> audio;
+};
+
+// Phoneme timing of a delivered segment, offsets are relative to the start of the stream.
+struct PhonemeTimings {
+    std::vector<int> phonemeIds;
+    std::vector<int> sampleOffsets;
+    std::vector<int> sampleCounts;
+};
+
+// Maps the per phoneme sample counts of a chunk to the post-processed audio.
+// trimmedStart and length are the chunk range kept by postProcessChunk and audioStart the stream
+// offset where that range was written. Phonemes outside of the kept range get a zero length.
+inline void alignPhonemeTimings(const int *phonemeIds, const int *alignments, size_t numPhonemes,
+                                size_t trimmedStart, size_t length, int64_t audioStart,
+                                PhonemeTimings &out) {
+    int64_t rangeStart = (int64_t) trimmedStart;
+    int64_t rangeEnd = rangeStart + (int64_t) length;
+    int64_t position = 0;
+    for (size_t i = 0; i < numPhonemes; ++i) {
+        int64_t start = position;
+        int64_t end = position + (alignments[i] > 0 ? alignments[i] : 0);
+        position = end;
+        start = start < rangeStart ? rangeStart : (start > rangeEnd ? rangeEnd : start);
+        end = end < start ? start : (end > rangeEnd ? rangeEnd : end);
+        out.phonemeIds.push_back(phonemeIds[i]);
+        out.sampleOffsets.push_back((int) (audioStart + start - rangeStart));
+        out.sampleCounts.push_back((int) (end - start));
+    }
+}
+
+#endif // PIPER_JNI_AUDIO_HPP_
@@ -0,0 +1,78 @@
+#ifndef PIPER_JNI_MEMORY_HPP_
+#define PIPER_JNI_MEMORY_HPP_
+
+#include <atomic>
+#include <cstdint>
+#include <filesystem>
+#include <system_error>
+
+#if defined(_WIN32)
+#ifndef NOMINMAX
+#define NOMINMAX
+#endif
+#include <windows.h>
+#include <psapi.h>
+#elif defined(__APPLE__)
+#include <mach/mach.h>
+#else
+#include <cstdio>
+#include <unistd.h>
+#endif
+
+// Native memory accounting of a loaded voice.
+// ORT and eSpeak do not report their allocations, so the loaded and synthesis sizes are measured as
+// growth of the process resident memory. They are approximations, concurrent activity in the
+// process (including the JVM) can inflate them.
+struct VoiceMemoryUsage {
+    // Size of the model file, the lower bound of the weights kept by the ORT session
+    int64_t modelBytes = 0;
+    // Resident memory growth while the voice was loaded
+    int64_t loadedBytes = 0;
+    // Largest resident memory growth observed during a synthesis with this voice (arenas, buffers)
+    std::atomic<int64_t> peakSynthesisBytes{0};
+
+    void recordSynthesis(int64_t bytes) {
+        int64_t current = peakSynthesisBytes.load();
+        while (bytes > current && !peakSynthesisBytes.compare_exchange_weak(current, bytes)) {
+        }
+    }
+};
+
+// Current resident memory of the process in bytes, 0 if unavailable
+inline int64_t residentMemoryBytes() {
+#if defined(_WIN32)
+    PROCESS_MEMORY_COUNTERS counters;
+    if (GetProcessMemoryInfo(GetCurrentProcess(), &counters, sizeof(counters))) {
+        return (int64_t) counters.WorkingSetSize;
+    }
+    return 0;
+#elif defined(__APPLE__)
+    mach_task_basic_info_data_t info;
+    mach_msg_type_number_t count = MACH_TASK_BASIC_INFO_COUNT;
+    if (task_info(mach_task_self(), MACH_TASK_BASIC_INFO, (task_info_t) &info, &count) == KERN_SUCCESS) {
+        return (int64_t) info.resident_size;
+    }
+    return 0;
+#else
+    FILE *statm = std::fopen("/proc/self/statm", "r");
+    if (statm == nullptr) {
+        return 0;
+    }
+    long size = 0;
+    long resident = 0;
+    if (std::fscanf(statm, "%ld %ld", &size, &resident) != 2) {
+        resident = 0;
+    }
+    std::fclose(statm);
+    return (int64_t) resident * (int64_t) sysconf(_SC_PAGESIZE);
+#endif
+}
+
+// Size of an UTF-8 encoded file path, 0 if unavailable
+inline int64_t fileSizeBytes(const char *path) {
+    std::error_code error;
+    auto size = std::filesystem::file_size(std::filesystem::u8path(path), error);
+    return error ? 0 : (int64_t) size;
+}
+
+#endif // PIPER_JNI_MEMORY_HPP_
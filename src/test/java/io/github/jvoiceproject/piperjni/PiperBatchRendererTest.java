@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import javax.naming.ConfigurationException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public class PiperBatchRendererTest {
+
+    @Test
+    public void renderManifest()
+            throws IOException,
+                    ConfigurationException,
+                    PiperJNI.NotInitialized,
+                    InterruptedException {
+        String voiceModel = System.getenv("VOICE_MODEL");
+        String voiceModelConfig = System.getenv("VOICE_MODEL_CONFIG");
+        String textToSpeak = System.getenv("TEXT_TO_SPEAK");
+        if (voiceModel == null || voiceModel.isBlank()) {
+            throw new ConfigurationException("env var VOICE_MODEL is required");
+        }
+        if (voiceModelConfig == null || voiceModelConfig.isBlank()) {
+            throw new ConfigurationException("env var VOICE_MODEL_CONFIG is required");
+        }
+        if (textToSpeak == null || textToSpeak.isBlank()) {
+            throw new ConfigurationException("env var TEXT_TO_SPEAK is required");
+        }
+        Path outputDir = Files.createTempDirectory("piper-batch");
+        Path manifest = outputDir.resolve("manifest.jsonl");
+        String text = textToSpeak.replace("\\", "\\\\").replace("\"", "\\\"");
+        Files.write(
+                manifest,
+                List.of(
+                        "{\"id\": \"item-1\", \"voice\": \"default\", \"text\": \"" + text + "\"}",
+                        "{\"id\": \"item-2\", \"voice\": \"default\", \"text\": \""
+                                + text
+                                + "\", \"options\": {\"gain\": 0.5, \"normalization\": \"peak\"}}",
+                        "{\"id\": \"item-3\", \"voice\": \"default\", \"text\": \""
+                                + text
+                                + "\"}"));
+        try (var piper = new PiperJNI();
+                var renderer = new PiperBatchRenderer(piper)) {
+            piper.initialize(true);
+            renderer.addVoice("default", Path.of(voiceModel), Path.of(voiceModelConfig), -1, 2);
+            var progress = renderer.render(manifest, outputDir, null);
+            assertEquals(3, progress.total());
+            assertEquals(3, progress.completed());
+            assertEquals(0, progress.failed());
+            assertTrue(progress.audioSeconds() > 0);
+            for (int i = 1; i <= 3; i++) {
+                assertTrue(Files.size(outputDir.resolve("item-" + i + ".wav")) > 44);
+            }
+            Files.delete(outputDir.resolve("item-2.wav"));
+            var rerun = renderer.render(manifest, outputDir, null);
+            assertEquals(2, rerun.skipped());
+            assertEquals(1, rerun.completed());
+        }
+    }
+}
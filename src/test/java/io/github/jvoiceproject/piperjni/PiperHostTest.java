@@ -0,0 +1,85 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import javax.naming.ConfigurationException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public class PiperHostTest {
+
+    @Test
+    public void hostTextToAudio()
+            throws IOException, ConfigurationException, PiperJNI.NotInitialized {
+        String voiceModel = System.getenv("VOICE_MODEL");
+        String voiceModelConfig = System.getenv("VOICE_MODEL_CONFIG");
+        String textToSpeak = System.getenv("TEXT_TO_SPEAK");
+        if (voiceModel == null || voiceModel.isBlank()) {
+            throw new ConfigurationException("env var VOICE_MODEL is required");
+        }
+        if (voiceModelConfig == null || voiceModelConfig.isBlank()) {
+            throw new ConfigurationException("env var VOICE_MODEL_CONFIG is required");
+        }
+        if (textToSpeak == null || textToSpeak.isBlank()) {
+            throw new ConfigurationException("env var TEXT_TO_SPEAK is required");
+        }
+        Path socketPath = Files.createTempDirectory("piper-host").resolve("piper.sock");
+        try (var piper = new PiperJNI();
+                var host = new PiperHost(piper, socketPath)) {
+            piper.initialize(true);
+            host.start();
+            try (var engine = new HostSynthesisEngine(socketPath);
+                    var otherEngine = new HostSynthesisEngine(socketPath);
+                    var client = new PiperJNI(engine);
+                    var otherClient = new PiperJNI(otherEngine)) {
+                client.initialize();
+                otherClient.initialize();
+                assertEquals(piper.getPiperVersion(), client.getPiperVersion());
+                try (var voice = client.loadVoice(Path.of(voiceModel), Path.of(voiceModelConfig));
+                        var sameVoice =
+                                otherClient.loadVoice(
+                                        Path.of(voiceModel), Path.of(voiceModelConfig))) {
+                    assertNotNull(voice);
+                    assertEquals(voice.getSampleRate(), sameVoice.getSampleRate());
+                    short[] samples = client.textToAudio(voice, textToSpeak);
+                    assertNotEquals(0, samples.length);
+                    final ArrayList<short[]> audioSamplesChunks = new ArrayList<>();
+                    otherClient.textToAudio(sameVoice, textToSpeak, audioSamplesChunks::add);
+                    assertFalse(audioSamplesChunks.isEmpty());
+                    assertNotEquals(0, audioSamplesChunks.get(0).length);
+                    var audio = client.textToAudioWithTiming(voice, textToSpeak);
+                    assertNotEquals(0, audio.timing().size());
+                }
+            }
+        }
+    }
+}
@@ -35,9 +35,11 @@ import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.BeforeAll;
@@ -163,6 +165,147 @@ public class PiperJNITest {
         }
     }
 
+    @Test
+    public void stopStreamOnCallbackFailure()
+            throws IOException, PiperJNI.NotInitialized, ConfigurationException {
+        String voiceModel = System.getenv("VOICE_MODEL");
+        String voiceModelConfig = System.getenv("VOICE_MODEL_CONFIG");
+        String textToSpeak = System.getenv("TEXT_TO_SPEAK");
+        if (voiceModel == null || voiceModel.isBlank()) {
+            throw new ConfigurationException("env var VOICE_MODEL is required");
+        }
+        if (voiceModelConfig == null || voiceModelConfig.isBlank()) {
+            throw new ConfigurationException("env var VOICE_MODEL_CONFIG is required");
+        }
+        if (textToSpeak == null || textToSpeak.isBlank()) {
+            throw new ConfigurationException("env var TEXT_TO_SPEAK is required");
+        }
+        try {
+            piper.initialize(true);
+            try (var voice = piper.loadVoice(Paths.get(voiceModel), Path.of(voiceModelConfig))) {
+                var params = new PiperSynthesisParams();
+                String text = textToSpeak + ". " + textToSpeak + ". " + textToSpeak + ".";
+                final ArrayList<short[]> audioSamplesChunks = new ArrayList<>();
+                assertThrows(
+                        IllegalStateException.class,
+                        () ->
+                                piper.textToAudio(
+                                        voice,
+                                        text,
+                                        params,
+                                        samples -> {
+                                            audioSamplesChunks.add(samples);
+                                            throw new IllegalStateException("stop");
+                                        }));
+                assertEquals(1, audioSamplesChunks.size());
+            }
+        } finally {
+            piper.terminate();
+        }
+    }
+
+    @Test
+    public void createPostProcessedAudioData()
+            throws IOException, PiperJNI.NotInitialized, ConfigurationException {
+        String voiceModel = System.getenv("VOICE_MODEL");
+        String voiceModelConfig = System.getenv("VOICE_MODEL_CONFIG");
+        String textToSpeak = System.getenv("TEXT_TO_SPEAK");
+        if (voiceModel == null || voiceModel.isBlank()) {
+            throw new ConfigurationException("env var VOICE_MODEL is required");
+        }
+        if (voiceModelConfig == null || voiceModelConfig.isBlank()) {
+            throw new ConfigurationException("env var VOICE_MODEL_CONFIG is required");
+        }
+        if (textToSpeak == null || textToSpeak.isBlank()) {
+            throw new ConfigurationException("env var TEXT_TO_SPEAK is required");
+        }
+        try {
+            piper.initialize(true);
+            try (var voice = piper.loadVoice(Paths.get(voiceModel), Path.of(voiceModelConfig))) {
+                short[] samples = piper.textToAudio(voice, textToSpeak);
+                var params = new PiperSynthesisParams();
+                params.normalization = PiperSynthesisParams.Normalization.PEAK;
+                params.normalizationTarget = 0.5f;
+                params.trimSilenceThreshold = 0.01f;
+                short[] processedSamples = piper.textToAudio(voice, textToSpeak, params);
+                assertNotEquals(0, processedSamples.length);
+                assertTrue(processedSamples.length <= samples.length, "Silence is trimmed");
+                int peak = 0;
+                for (short sample : processedSamples) {
+                    peak = Math.max(peak, Math.abs(sample));
+                }
+                assertTrue(Math.abs(peak - 0.5 * 32767) < 2, "Audio is peak normalized");
+            }
+        } finally {
+            piper.terminate();
+        }
+    }
+
+    @Test
+    public void createAudioDataWithTiming()
+            throws IOException, PiperJNI.NotInitialized, ConfigurationException {
+        String voiceModel = System.getenv("VOICE_MODEL");
+        String voiceModelConfig = System.getenv("VOICE_MODEL_CONFIG");
+        String textToSpeak = System.getenv("TEXT_TO_SPEAK");
+        if (voiceModel == null || voiceModel.isBlank()) {
+            throw new ConfigurationException("env var VOICE_MODEL is required");
+        }
+        if (voiceModelConfig == null || voiceModelConfig.isBlank()) {
+            throw new ConfigurationException("env var VOICE_MODEL_CONFIG is required");
+        }
+        if (textToSpeak == null || textToSpeak.isBlank()) {
+            throw new ConfigurationException("env var TEXT_TO_SPEAK is required");
+        }
+        try {
+            piper.initialize(true);
+            try (var voice = piper.loadVoice(Paths.get(voiceModel), Path.of(voiceModelConfig))) {
+                var params = new PiperSynthesisParams();
+                params.trimSilenceThreshold = 0.01f;
+                params.sentenceSilence = 0.2f;
+                var audio = piper.textToAudioWithTiming(voice, textToSpeak, params);
+                assertNotEquals(0, audio.samples().length);
+                var timing = audio.timing();
+                int[] offsets = timing.getSampleOffsets();
+                int[] counts = timing.getSampleCounts();
+                for (int i = 0; i < timing.size(); i++) {
+                    assertTrue(i == 0 || offsets[i] >= offsets[i - 1], "Offsets are ordered");
+                    assertTrue(offsets[i] + counts[i] <= audio.samples().length, "Inside audio");
+                }
+            }
+        } finally {
+            piper.terminate();
+        }
+    }
+
+    @Test
+    public void voiceMemoryUsage()
+            throws IOException, PiperJNI.NotInitialized, ConfigurationException {
+        String voiceModel = System.getenv("VOICE_MODEL");
+        String voiceModelConfig = System.getenv("VOICE_MODEL_CONFIG");
+        if (voiceModel == null || voiceModel.isBlank()) {
+            throw new ConfigurationException("env var VOICE_MODEL is required");
+        }
+        if (voiceModelConfig == null || voiceModelConfig.isBlank()) {
+            throw new ConfigurationException("env var VOICE_MODEL_CONFIG is required");
+        }
+        try {
+            piper.initialize(true);
+            try (var voice = piper.loadVoice(Paths.get(voiceModel), Path.of(voiceModelConfig))) {
+                var usage = voice.getMemoryUsage();
+                assertEquals(Files.size(Path.of(voiceModel)), usage.modelBytes());
+                assertTrue(PiperJNI.getNativeMemoryUsage() >= usage.totalBytes());
+                PiperJNI.setNativeMemoryLimit(PiperJNI.getNativeMemoryUsage() + 1);
+                assertThrows(
+                        PiperJNI.NativeMemoryLimitExceeded.class,
+                        () -> piper.loadVoice(Paths.get(voiceModel), Path.of(voiceModelConfig)));
+            } finally {
+                PiperJNI.setNativeMemoryLimit(0);
+            }
+        } finally {
+            piper.terminate();
+        }
+    }
+
     private void createWAVFile(List<short[]> sampleChunks, long sampleRate, Path outFilePath) {
         javax.sound.sampled.AudioFormat jAudioFormat;
         ByteBuffer byteBuffer;
@@ -0,0 +1,95 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import io.github.jvoiceproject.piperjni.internal.HostProtocol;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public class PiperSynthesisParamsTest {
+
+    @Test
+    public void copyKeepsEveryField() throws IllegalAccessException {
+        PiperSynthesisParams params = nonDefaultParams();
+        assertSameFields(params, params.copy());
+    }
+
+    @Test
+    public void hostProtocolKeepsEveryField() throws IOException, IllegalAccessException {
+        PiperSynthesisParams params = nonDefaultParams();
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            HostProtocol.writeParams(out, params);
+        }
+        try (var in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertSameFields(params, HostProtocol.readParams(in));
+            assertEquals(-1, in.read(), "Every written byte is read");
+        }
+    }
+
+    // sets every field to a value other than its default, so a field missed by a copy is detected
+    private static PiperSynthesisParams nonDefaultParams() throws IllegalAccessException {
+        PiperSynthesisParams defaults = new PiperSynthesisParams();
+        PiperSynthesisParams params = new PiperSynthesisParams();
+        for (Field field : paramFields()) {
+            Class<?> type = field.getType();
+            if (type == float.class) {
+                field.setFloat(params, field.getFloat(defaults) + 0.25f);
+            } else if (type == int.class) {
+                field.setInt(params, field.getInt(defaults) + 1);
+            } else if (type == boolean.class) {
+                field.setBoolean(params, !field.getBoolean(defaults));
+            } else if (type == PiperSynthesisParams.Normalization.class) {
+                field.set(params, PiperSynthesisParams.Normalization.RMS);
+            } else {
+                throw new AssertionError("Unhandled field type " + type + " of " + field);
+            }
+            assertNotEquals(field.get(defaults), field.get(params), field.getName());
+        }
+        return params;
+    }
+
+    private static void assertSameFields(PiperSynthesisParams expected, PiperSynthesisParams actual)
+            throws IllegalAccessException {
+        for (Field field : paramFields()) {
+            assertEquals(field.get(expected), field.get(actual), field.getName());
+        }
+    }
+
+    private static Field[] paramFields() {
+        return Arrays.stream(PiperSynthesisParams.class.getFields())
+                .filter(field -> !Modifier.isStatic(field.getModifiers()))
+                .toArray(Field[]::new);
+    }
+}
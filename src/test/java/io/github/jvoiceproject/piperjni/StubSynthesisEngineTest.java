@@ -0,0 +1,202 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public class StubSynthesisEngineTest {
+    private static final Path STUB_MODEL = Path.of("stub.onnx");
+    private static final Path STUB_MODEL_CONFIG = Path.of("stub.onnx.json");
+
+    @Test
+    public void stubTextToAudio() throws IOException, PiperJNI.NotInitialized {
+        var config = new StubSynthesisEngine.Config();
+        config.sampleRate = 16000;
+        config.secondsPerCharacter = 0.01f;
+        config.chunkSeconds = 0.05f;
+        config.realTimeFactor = 0.5f;
+        try (var piper = new PiperJNI(new StubSynthesisEngine(config))) {
+            assertThrows(
+                    PiperJNI.NotInitialized.class,
+                    () -> piper.loadVoice(STUB_MODEL, STUB_MODEL_CONFIG));
+            piper.initialize();
+            try (var voice = piper.loadVoice(STUB_MODEL, STUB_MODEL_CONFIG)) {
+                assertEquals(16000, voice.getSampleRate());
+                String text = "Hello stub engine";
+                long start = System.nanoTime();
+                short[] samples = piper.textToAudio(voice, text);
+                long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+                assertEquals(text.length() * 160, samples.length);
+                // 0.17 seconds of audio at half real time
+                assertTrue(elapsedMillis >= 80, "Audio is paced, took " + elapsedMillis + "ms");
+
+                var params = new PiperSynthesisParams();
+                params.timing = true;
+                List<short[]> chunks = new ArrayList<>();
+                List<PiperTimingTrack> tracks = new ArrayList<>();
+                piper.textToAudio(
+                        voice,
+                        text,
+                        params,
+                        new PiperJNI.AudioCallback() {
+                            @Override
+                            public void onAudio(short[] audioSamples) {
+                                chunks.add(audioSamples);
+                            }
+
+                            @Override
+                            public void onTiming(PiperTimingTrack timing) {
+                                tracks.add(timing);
+                            }
+                        });
+                assertEquals(4, chunks.size());
+                assertEquals(800, chunks.get(0).length);
+                assertEquals(chunks.size(), tracks.size());
+
+                var audio = piper.textToAudioWithTiming(voice, text);
+                assertArrayEquals(samples, audio.samples(), "Output is deterministic");
+                assertEquals(text.length(), audio.timing().size());
+                assertEquals(text.codePointAt(6), audio.timing().getPhonemes()[6]);
+                assertEquals(6 * 160, audio.timing().getSampleOffsets()[6]);
+            }
+        }
+    }
+
+    @Test
+    public void stubBatchRendering()
+            throws IOException, PiperJNI.NotInitialized, InterruptedException {
+        Path outputDir = Files.createTempDirectory("piper-stub-batch");
+        Path manifest = outputDir.resolve("manifest.jsonl");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            lines.add(
+                    "{\"id\": \"item-"
+                            + i
+                            + "\", \"voice\": \"stub\", \"text\": \"Prompt number "
+                            + i
+                            + "\"}");
+        }
+        Files.write(manifest, lines);
+        var config = new StubSynthesisEngine.Config();
+        config.realTimeFactor = 0.01f;
+        try (var piper = new PiperJNI(new StubSynthesisEngine(config));
+                var renderer = new PiperBatchRenderer(piper)) {
+            piper.initialize();
+            renderer.addVoice("stub", STUB_MODEL, STUB_MODEL_CONFIG, -1, 4);
+            var progress = renderer.render(manifest, outputDir, null);
+            assertEquals(20, progress.completed());
+            assertTrue(progress.audioSecondsPerSecond() > 0);
+            assertTrue(Files.size(outputDir.resolve("item-7.wav")) > 44);
+            var rerun = renderer.render(manifest, outputDir, null);
+            assertEquals(20, rerun.skipped());
+            assertEquals(0, rerun.completed());
+            lines.add(lines.get(0).replace("item-0", "ITEM-0"));
+            Files.write(manifest, lines);
+            assertThrows(
+                    IOException.class,
+                    () -> renderer.render(manifest, outputDir, null),
+                    "Ids differing only in case are duplicates");
+        }
+    }
+
+    @Test
+    public void stubHostSharedVoices() throws IOException, PiperJNI.NotInitialized {
+        var engine = new StubSynthesisEngine();
+        Path directory = Files.createTempDirectory("piper-stub-host");
+        Path socketPath = directory.resolve("piper.sock");
+        // the engine checks the model files exist before sending them to the host
+        Path model = Files.createFile(directory.resolve("stub.onnx"));
+        Path modelConfig = Files.createFile(directory.resolve("stub.onnx.json"));
+        try (var piper = new PiperJNI(engine);
+                var host = new PiperHost(piper, socketPath)) {
+            piper.initialize();
+            host.start();
+            assertEquals(
+                    PosixFilePermissions.fromString("rw-------"),
+                    Files.getPosixFilePermissions(socketPath),
+                    "Only the host user can connect");
+            try (var hostEngine = new HostSynthesisEngine(socketPath);
+                    var client = new PiperJNI(hostEngine)) {
+                client.initialize();
+                var voice = client.loadVoice(model, modelConfig);
+                var sameVoice = client.loadVoice(model, modelConfig);
+                assertEquals(1, engine.getLoadedVoices(), "Voice is loaded once");
+                voice.close();
+                assertEquals("Hi".length() * 1323, client.textToAudio(sameVoice, "Hi").length);
+                var audio = client.textToAudioWithTiming(sameVoice, "Hi");
+                assertEquals("Hi".length(), audio.timing().size());
+                sameVoice.close();
+                assertEquals(0, engine.getLoadedVoices(), "Voice is released");
+            }
+        }
+    }
+
+    @Test
+    public void stubHostCallbackFailure() throws IOException, PiperJNI.NotInitialized {
+        var config = new StubSynthesisEngine.Config();
+        config.chunkSeconds = 0.05f;
+        Path directory = Files.createTempDirectory("piper-stub-host");
+        Path socketPath = directory.resolve("piper.sock");
+        Path model = Files.createFile(directory.resolve("stub.onnx"));
+        Path modelConfig = Files.createFile(directory.resolve("stub.onnx.json"));
+        try (var piper = new PiperJNI(new StubSynthesisEngine(config));
+                var host = new PiperHost(piper, socketPath)) {
+            piper.initialize();
+            host.start();
+            try (var engine = new HostSynthesisEngine(socketPath);
+                    var client = new PiperJNI(engine)) {
+                client.initialize();
+                try (var voice = client.loadVoice(model, modelConfig)) {
+                    String text = "Hello stub host";
+                    assertThrows(
+                            IllegalStateException.class,
+                            () ->
+                                    client.textToAudio(
+                                            voice,
+                                            text,
+                                            samples -> {
+                                                throw new IllegalStateException("Stop");
+                                            }));
+                    List<short[]> chunks = new ArrayList<>();
+                    client.textToAudio(voice, text, chunks::add);
+                    assertEquals(
+                            text.length() * 1323,
+                            chunks.stream().mapToInt(chunk -> chunk.length).sum(),
+                            "The next request gets its whole audio");
+                }
+            }
+        }
+    }
+}
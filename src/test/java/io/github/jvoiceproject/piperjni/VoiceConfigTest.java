@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * piper-jni
+ * %%
+ * Copyright (C) 2023 - 2026 Contributors to whisper-jni
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.jvoiceproject.piperjni;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Miguel Álvarez Díez - Initial contribution
+ */
+public class VoiceConfigTest {
+    private static final String MULTI_SPEAKER_CONFIG =
+            """
+            {
+              "audio": {"sample_rate": 22050, "quality": "medium"},
+              "espeak": {"voice": "en-us"},
+              "language": {"code": "en_US", "family": "en"},
+              "inference": {"noise_scale": 0.333, "length_scale": 1.2, "noise_w": 0.5},
+              "phoneme_type": "espeak",
+              "phoneme_id_map": {"_": [0], "^": [1], "$": [2]},
+              "num_speakers": 2,
+              "speaker_id_map": {"p225": 0, "p226": 1}
+            }
+            """;
+
+    @Test
+    public void parseVoiceConfig() throws IOException {
+        var config = VoiceConfig.parse(MULTI_SPEAKER_CONFIG);
+        assertEquals(22050, config.sampleRate());
+        assertEquals("medium", config.quality());
+        assertEquals("en-us", config.espeakVoice());
+        assertEquals("en_US", config.languageCode());
+        assertTrue(config.usesESpeakPhonemes());
+        assertEquals(2, config.numSpeakers());
+        assertEquals(Map.of("p225", 0, "p226", 1), config.speakerIdMap());
+        assertEquals(new VoiceConfig.Inference(0.333f, 1.2f, 0.5f), config.inference());
+
+        var textConfig =
+                VoiceConfig.parse(
+                        "{\"audio\": {\"sample_rate\": 16000}, \"phoneme_type\": \"text\"}");
+        assertEquals(16000, textConfig.sampleRate());
+        assertFalse(textConfig.usesESpeakPhonemes());
+        assertNull(textConfig.espeakVoice());
+        assertEquals(1, textConfig.numSpeakers());
+        assertTrue(textConfig.speakerIdMap().isEmpty());
+        assertEquals(VoiceConfig.Inference.DEFAULT, textConfig.inference());
+
+        assertThrows(IOException.class, () -> VoiceConfig.parse("{\"audio\": {}}"));
+        assertThrows(IOException.class, () -> VoiceConfig.parse("{\"audio\": "));
+    }
+
+    @Test
+    public void scanVoiceCatalog() throws IOException {
+        Path directory = Files.createTempDirectory("piper-voices");
+        Path nested = Files.createDirectories(directory.resolve("en"));
+        Files.writeString(nested.resolve("multi.onnx.json"), MULTI_SPEAKER_CONFIG);
+        Files.createFile(nested.resolve("multi.onnx"));
+        Files.writeString(
+                directory.resolve("text.onnx.json"),
+                "{\"audio\": {\"sample_rate\": 16000}, \"phoneme_type\": \"text\"}");
+        Files.createFile(directory.resolve("text.onnx"));
+        Files.writeString(directory.resolve("broken.onnx.json"), "{");
+        Files.createFile(directory.resolve("broken.onnx"));
+        Files.writeString(directory.resolve("no-model.onnx.json"), MULTI_SPEAKER_CONFIG);
+
+        var catalog = VoiceCatalog.scan(directory);
+        assertEquals(2, catalog.getVoices().size());
+        var multi = catalog.getVoice("multi").orElseThrow();
+        assertEquals(nested.resolve("multi.onnx"), multi.modelPath());
+        assertEquals(2, multi.config().numSpeakers());
+        assertEquals(16000, catalog.getVoice("text").orElseThrow().config().sampleRate());
+        assertTrue(catalog.getErrors().containsKey(directory.resolve("broken.onnx.json")));
+        assertTrue(Files.exists(directory.resolve(VoiceCatalog.CACHE_FILE)));
+
+        var cachedCatalog = VoiceCatalog.scan(directory);
+        assertEquals(catalog.getVoices(), cachedCatalog.getVoices());
+        var cachedVoice = cachedCatalog.getVoice("text").orElseThrow();
+        cachedCatalog.refresh();
+        assertSame(cachedVoice, cachedCatalog.getVoice("text").orElseThrow());
+    }
+}